@@ -0,0 +1,27 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Правила приведения URL сайта к каноническому виду.
+ * Все значения по умолчанию подходят для большинства сайтов,
+ * в application.yaml переопределяются только отличия.
+ */
+@Getter
+@Setter
+public class CanonicalRules {
+    private boolean foldWww = true;
+    private List<String> hostAliases = new ArrayList<>();
+    private List<String> dropParams = new ArrayList<>(List.of(
+            "utm_*", "gclid", "yclid", "ysclid", "fbclid", "_openstat"
+    ));
+    private boolean sortParams = true;
+    // Запрос идёт по каноническому адресу, поэтому на сайтах с адресами вида /path/
+    // обрезка слэша давала бы лишний редирект на каждую страницу
+    private boolean removeTrailingSlash = false;
+    private boolean honorCanonicalLink = true;
+}
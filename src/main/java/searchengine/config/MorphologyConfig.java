@@ -0,0 +1,20 @@
+package searchengine.config;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+@Configuration
+public class MorphologyConfig {
+
+    /**
+     * Один словарь русской морфологии на всё приложение: загрузка занимает секунды и сотни мегабайт.
+     */
+    @Bean
+    public LuceneMorphology russianLuceneMorphology() throws IOException {
+        return new RussianLuceneMorphology();
+    }
+}
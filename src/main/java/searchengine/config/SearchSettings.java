@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    // Леммы, которые встречаются на большей доле страниц сайта, из запроса отбрасываются
+    private double maxLemmaPageShare = 0.8;
+    // Сколько постингов леммы читается из базы за один запрос
+    private int postingsBatch = 1000;
+    // Каталог снимков поискового индекса, локальный для узла
+    private String snapshotPath = "data/snapshots";
+}
@@ -5,6 +5,7 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
 import java.util.List;
 
 @Getter
@@ -13,4 +14,19 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private List<Site> sites;
+    private boolean compressContent;
+    private String bodyStore = "segments";
+    private String bodyStorePath = "data/pages";
+    private String nodeId;
+    private int leaseSeconds = 60;
+    private long leasePollMs = 5000;
+    private long heartbeatMs = 10000;
+    private int maxSitesPerNode = 2;
+
+    /**
+     * node-id из настроек, а если он не задан - pid@host этого процесса.
+     */
+    public String resolveNodeId() {
+        return nodeId == null || nodeId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId;
+    }
 }
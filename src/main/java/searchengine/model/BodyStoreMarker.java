@@ -0,0 +1,24 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * Идентификатор каталога сегментов, с которым работает база. Тот же идентификатор лежит
+ * в файле store.id внутри body-store-path; узел с другим каталогом не запустится.
+ */
+@Entity
+@Table(name = "body_store")
+@Getter
+@Setter
+public class BodyStoreMarker {
+
+    @Id
+    @Column(columnDefinition = "VARCHAR(64)")
+    private String name;
+
+    @Column(name = "store_id", columnDefinition = "VARCHAR(36)", nullable = false)
+    private String storeId;
+}
@@ -0,0 +1,42 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Аренда обхода сайта одним узлом. Узел продлевает expires_at, пока обходит сайт;
+ * просроченную аренду со статусом RUNNING забирает другой узел.
+ */
+@Entity
+@Table(name = "crawl_lease", uniqueConstraints = @UniqueConstraint(name = "uk_lease_site_url", columnNames = "site_url"))
+@Getter
+@Setter
+public class CrawlLease {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Column(name = "site_url", columnDefinition = "VARCHAR(255)", nullable = false)
+    private String siteUrl;
+
+    @Enumerated(EnumType.STRING)
+    @Column(columnDefinition = "ENUM('PENDING', 'RUNNING', 'DONE', 'FAILED', 'STOPPED')", nullable = false)
+    private LeaseStatus status;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String owner;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Version
+    @Column(nullable = false)
+    private long version;
+}
@@ -0,0 +1,9 @@
+package searchengine.model;
+
+public enum LeaseStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED,
+    STOPPED
+}
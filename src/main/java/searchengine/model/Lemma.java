@@ -25,6 +25,11 @@ public class Lemma {
     @Column(nullable = false)
     private int frequency;
 
+    // Наибольший rank леммы на страницах сайта - верхняя граница её вклада в релевантность.
+    // Пересчитывается только в конце обхода сайта (LemmaRepository.refreshStatistics)
+    @Column(name = "max_rank")
+    private Float maxRank;
+
 
 
 }
@@ -0,0 +1,28 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Блокировка фоновой задачи, которую должен выполнять только один узел.
+ * Владелец продлевает expires_at по ходу работы; просроченную блокировку забирает другой узел.
+ */
+@Entity
+@Table(name = "maintenance_lock")
+@Getter
+@Setter
+public class MaintenanceLock {
+
+    @Id
+    @Column(columnDefinition = "VARCHAR(64)")
+    private String name;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String owner;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+}
@@ -26,7 +26,34 @@ public class Page {
     @Column(nullable = false)
     private int code;
 
-    @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
+    // Несжатое содержимое; в режиме compress-content пусто, данные лежат в contentData
+    @Column(columnDefinition = "MEDIUMTEXT")
     private String content;
 
+    @Column(name = "content_data", columnDefinition = "MEDIUMBLOB")
+    private byte[] contentData;
+
+    // Положение тела страницы в сегментном хранилище, если оно включено
+    @Column(name = "body_segment")
+    private Integer bodySegment;
+
+    @Column(name = "body_offset")
+    private Long bodyOffset;
+
+    @Column(name = "body_length")
+    private Integer bodyLength;
+
+    @Column(name = "simhash")
+    private Long simhash;
+
+    // Почти дубликат хранится без содержимого, со ссылкой на исходную страницу
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "duplicate_of")
+    private Page duplicateOf;
+
+    // Сумма rank всех лемм страницы: больше этого её релевантность быть не может.
+    // Пересчитывается только в конце обхода сайта (PageRepository.refreshRankNorms)
+    @Column(name = "rank_norm")
+    private Float rankNorm;
+
 }
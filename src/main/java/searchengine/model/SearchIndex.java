@@ -6,7 +6,8 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "`index`") // Используем обратные кавычки для зарезервированного слова
+@Table(name = "`index`", // Используем обратные кавычки для зарезервированного слова
+        indexes = @Index(name = "idx_index_lemma_page", columnList = "lemma_id, page_id"))
 @Getter @Setter
 public class SearchIndex {
     @Id
@@ -0,0 +1,7 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import searchengine.model.BodyStoreMarker;
+
+public interface BodyStoreMarkerRepository extends JpaRepository<BodyStoreMarker, String> {
+}
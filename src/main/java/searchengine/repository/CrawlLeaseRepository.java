@@ -0,0 +1,71 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.CrawlLease;
+import searchengine.model.LeaseStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface CrawlLeaseRepository extends JpaRepository<CrawlLease, Integer> {
+    Optional<CrawlLease> findBySiteUrl(String siteUrl);
+
+    boolean existsByStatusIn(Collection<LeaseStatus> statuses);
+
+    @Query("SELECT l FROM CrawlLease l WHERE l.status = searchengine.model.LeaseStatus.PENDING " +
+            "OR (l.status = searchengine.model.LeaseStatus.RUNNING AND l.expiresAt < :now)")
+    List<CrawlLease> findClaimable(@Param("now") LocalDateTime now);
+
+    /**
+     * Захват аренды: обновление пройдёт только у одного узла, у остальных версия уже не совпадёт.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlLease l SET l.owner = :owner, l.status = searchengine.model.LeaseStatus.RUNNING, " +
+            "l.expiresAt = :expiresAt, l.heartbeatAt = :now, l.version = l.version + 1 " +
+            "WHERE l.id = :id AND l.version = :version AND (l.status = searchengine.model.LeaseStatus.PENDING " +
+            "OR (l.status = searchengine.model.LeaseStatus.RUNNING AND l.expiresAt < :now))")
+    int claim(@Param("id") int id, @Param("version") long version, @Param("owner") String owner,
+              @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlLease l SET l.expiresAt = :expiresAt, l.heartbeatAt = :now " +
+            "WHERE l.siteUrl = :siteUrl AND l.owner = :owner AND l.status = searchengine.model.LeaseStatus.RUNNING")
+    int heartbeat(@Param("siteUrl") String siteUrl, @Param("owner") String owner,
+                  @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlLease l SET l.status = :status, l.version = l.version + 1 " +
+            "WHERE l.siteUrl = :siteUrl AND l.owner = :owner AND l.status = searchengine.model.LeaseStatus.RUNNING")
+    int finish(@Param("siteUrl") String siteUrl, @Param("owner") String owner, @Param("status") LeaseStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlLease l SET l.status = searchengine.model.LeaseStatus.STOPPED, l.version = l.version + 1 " +
+            "WHERE l.status IN (searchengine.model.LeaseStatus.PENDING, searchengine.model.LeaseStatus.RUNNING)")
+    int stopAll();
+
+    /**
+     * Останавливает аренды сайтов, которых больше нет в конфигурации.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlLease l SET l.status = searchengine.model.LeaseStatus.STOPPED, l.version = l.version + 1 " +
+            "WHERE l.siteUrl NOT IN :siteUrls " +
+            "AND l.status IN (searchengine.model.LeaseStatus.PENDING, searchengine.model.LeaseStatus.RUNNING)")
+    int stopMissing(@Param("siteUrls") Collection<String> siteUrls);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlLease l SET l.status = searchengine.model.LeaseStatus.STOPPED, l.version = l.version + 1 " +
+            "WHERE l.id = :id AND l.version = :version")
+    int release(@Param("id") int id, @Param("version") long version);
+}
@@ -1,7 +1,18 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import searchengine.model.SearchIndex;
 
+import java.util.List;
+
 public interface IndexRepository extends JpaRepository<SearchIndex, Integer> {
+    /**
+     * Порция постингов леммы со страниц с id больше afterPageId, по возрастанию id страницы.
+     */
+    @Query("SELECT i.page.id AS pageId, i.rank AS rank, p.rankNorm AS rankNorm FROM SearchIndex i JOIN i.page p " +
+            "WHERE i.lemma.id = :lemmaId AND i.page.id > :afterPageId ORDER BY i.page.id")
+    List<Posting> findPostings(@Param("lemmaId") int lemmaId, @Param("afterPageId") int afterPageId, Pageable pageable);
 }
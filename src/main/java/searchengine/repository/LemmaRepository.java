@@ -1,7 +1,27 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Lemma;
+import searchengine.model.SiteEntity;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
+    List<Lemma> findBySiteAndLemmaIn(SiteEntity site, Collection<String> lemmas);
+
+    /**
+     * Пересчитывает frequency как число страниц сайта, на которых встречается лемма,
+     * и max_rank как наибольший rank леммы на этих страницах.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE lemma l SET l.frequency = (SELECT COUNT(*) FROM `index` i WHERE i.lemma_id = l.id), " +
+            "l.max_rank = (SELECT MAX(i.`rank`) FROM `index` i WHERE i.lemma_id = l.id) " +
+            "WHERE l.site_id = :siteId", nativeQuery = true)
+    int refreshStatistics(@Param("siteId") int siteId);
 }
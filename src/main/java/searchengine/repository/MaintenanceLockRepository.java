@@ -0,0 +1,28 @@
+package searchengine.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.MaintenanceLock;
+
+import java.time.LocalDateTime;
+
+public interface MaintenanceLockRepository extends JpaRepository<MaintenanceLock, String> {
+
+    /**
+     * Захват или продление: пройдёт у текущего владельца или у любого узла, если блокировка свободна.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MaintenanceLock l SET l.owner = :owner, l.expiresAt = :expiresAt " +
+            "WHERE l.name = :name AND (l.owner = :owner OR l.owner IS NULL OR l.expiresAt < :now)")
+    int acquire(@Param("name") String name, @Param("owner") String owner,
+                @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE MaintenanceLock l SET l.owner = NULL, l.expiresAt = NULL WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner);
+}
@@ -1,11 +1,26 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Page;
 import searchengine.model.SiteEntity;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface PageRepository extends JpaRepository<Page, Integer> {
     Optional<Page> findBySiteAndPath(SiteEntity site, String path);
+    long countBySiteAndDuplicateOfIsNull(SiteEntity site);
+    List<Page> findByContentDataIsNullAndDuplicateOfIsNullAndIdGreaterThanOrderByIdAsc(int id, Pageable pageable);
+    List<Page> findByBodySegmentIsNullAndDuplicateOfIsNullAndIdGreaterThanOrderByIdAsc(int id, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE page p SET p.rank_norm = (SELECT SUM(i.`rank`) FROM `index` i WHERE i.page_id = p.id) " +
+            "WHERE p.site_id = :siteId", nativeQuery = true)
+    int refreshRankNorms(@Param("siteId") int siteId);
 }
@@ -0,0 +1,9 @@
+package searchengine.repository;
+
+public interface Posting {
+    int getPageId();
+
+    float getRank();
+
+    Float getRankNorm();
+}
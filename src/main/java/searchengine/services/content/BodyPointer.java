@@ -0,0 +1,12 @@
+package searchengine.services.content;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class BodyPointer {
+    private final int segment;
+    private final long offset;
+    private final int length;
+}
@@ -0,0 +1,12 @@
+package searchengine.services.content;
+
+/**
+ * Хранилище тел страниц вне таблицы page. В строке страницы остаётся только {@link BodyPointer}.
+ */
+public interface PageBodyStore {
+    BodyPointer write(int siteId, byte[] body);
+
+    byte[] read(int siteId, BodyPointer pointer);
+
+    void deleteSite(int siteId);
+}
@@ -0,0 +1,86 @@
+package searchengine.services.content;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Двоичный формат содержимого страницы: первый байт - версия формата, дальше данные.
+ */
+public final class PageContentCodec {
+
+    public static final byte FORMAT_PLAIN = 0;
+    public static final byte FORMAT_DEFLATE = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private PageContentCodec() {
+    }
+
+    public static byte[] encode(String content, boolean compress) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        if (!compress) {
+            return withFormat(FORMAT_PLAIN, raw);
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 16);
+            out.write(FORMAT_DEFLATE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return "";
+        }
+        switch (data[0]) {
+            case FORMAT_PLAIN:
+                return new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+            case FORMAT_DEFLATE:
+                return new String(inflate(data), StandardCharsets.UTF_8);
+            default:
+                throw new IllegalArgumentException("Неизвестный формат содержимого страницы: " + data[0]);
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 5);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Содержимое страницы повреждено");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Содержимое страницы повреждено", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] withFormat(byte format, byte[] raw) {
+        byte[] result = new byte[raw.length + 1];
+        result[0] = format;
+        System.arraycopy(raw, 0, result, 1, raw.length);
+        return result;
+    }
+}
@@ -0,0 +1,13 @@
+package searchengine.services.content;
+
+import searchengine.model.Page;
+
+public interface PageContentService {
+    void setContent(Page page, String html);
+
+    String getContent(Page page);
+
+    void deleteSite(int siteId);
+
+    void migrateContent();
+}
@@ -0,0 +1,175 @@
+package searchengine.services.content;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SitesList;
+import searchengine.model.MaintenanceLock;
+import searchengine.model.Page;
+import searchengine.repository.MaintenanceLockRepository;
+import searchengine.repository.PageRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class PageContentServiceImpl implements PageContentService {
+    private static final Logger logger = LoggerFactory.getLogger(PageContentServiceImpl.class);
+    private static final int MIGRATION_CHUNK = 200;
+    private static final String MIGRATION_LOCK = "page-content-migration";
+    private static final long MIGRATION_LOCK_SECONDS = 300;
+
+    private final PageRepository pageRepository;
+    private final MaintenanceLockRepository lockRepository;
+    private final SitesList sitesList;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Optional<PageBodyStore> bodyStore;
+
+    @Override
+    public void setContent(Page page, String html) {
+        if (bodyStore.isPresent()) {
+            byte[] body = PageContentCodec.encode(html, sitesList.isCompressContent());
+            BodyPointer pointer = bodyStore.get().write(page.getSite().getId(), body);
+            page.setBodySegment(pointer.getSegment());
+            page.setBodyOffset(pointer.getOffset());
+            page.setBodyLength(pointer.getLength());
+            page.setContent(null);
+            page.setContentData(null);
+        } else if (sitesList.isCompressContent()) {
+            page.setContent(null);
+            page.setContentData(PageContentCodec.encode(html, true));
+        } else {
+            page.setContent(html);
+            page.setContentData(null);
+        }
+    }
+
+    /**
+     * Тело читается из хранилища и распаковывается только здесь, при обращении к нему.
+     */
+    @Override
+    public String getContent(Page page) {
+        if (page.getBodySegment() != null) {
+            BodyPointer pointer = new BodyPointer(page.getBodySegment(), page.getBodyOffset(), page.getBodyLength());
+            return PageContentCodec.decode(readBody(page.getSite().getId(), pointer));
+        }
+        if (page.getContentData() != null) {
+            return PageContentCodec.decode(page.getContentData());
+        }
+        return page.getContent() == null ? "" : page.getContent();
+    }
+
+    @Override
+    public void deleteSite(int siteId) {
+        bodyStore.ifPresent(store -> store.deleteSite(siteId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        // Колонка content должна допускать NULL в любом режиме: у дубликатов тела нет
+        if (!allowNullContent() || (bodyStore.isEmpty() && !sitesList.isCompressContent())) {
+            return;
+        }
+        Thread migration = new Thread(this::migrateContentOnce, "page-content-migration");
+        migration.setDaemon(true);
+        migration.start();
+    }
+
+    /**
+     * Миграцию выполняет один узел: остальные одновременно переписали бы те же строки
+     * и дописали бы их тела в те же сегменты.
+     */
+    private void migrateContentOnce() {
+        String owner = sitesList.resolveNodeId();
+        if (!acquireMigrationLock(owner)) {
+            logger.info("Перенос содержимого страниц выполняет другой узел");
+            return;
+        }
+        try {
+            migrateContent();
+        } finally {
+            lockRepository.release(MIGRATION_LOCK, owner);
+        }
+    }
+
+    private boolean acquireMigrationLock(String owner) {
+        if (!lockRepository.existsById(MIGRATION_LOCK)) {
+            MaintenanceLock lock = new MaintenanceLock();
+            lock.setName(MIGRATION_LOCK);
+            try {
+                lockRepository.saveAndFlush(lock);
+            } catch (DataIntegrityViolationException e) {
+                // Строку одновременно создал другой узел
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return lockRepository.acquire(MIGRATION_LOCK, owner, now, now.plusSeconds(MIGRATION_LOCK_SECONDS)) == 1;
+    }
+
+    /**
+     * Переносит содержимое, сохранённое в старом формате, в текущее хранилище
+     * порциями по {@value #MIGRATION_CHUNK} страниц, каждая порция в своей транзакции.
+     */
+    @Override
+    public void migrateContent() {
+        int lastId = 0;
+        int migrated = 0;
+        while (true) {
+            int fromId = lastId;
+            List<Page> chunk = transactionTemplate.execute(status -> {
+                PageRequest chunkRequest = PageRequest.of(0, MIGRATION_CHUNK);
+                List<Page> pages = bodyStore.isPresent()
+                        ? pageRepository.findByBodySegmentIsNullAndDuplicateOfIsNullAndIdGreaterThanOrderByIdAsc(fromId, chunkRequest)
+                        : pageRepository.findByContentDataIsNullAndDuplicateOfIsNullAndIdGreaterThanOrderByIdAsc(fromId, chunkRequest);
+                for (Page page : pages) {
+                    setContent(page, getContent(page));
+                }
+                pageRepository.saveAll(pages);
+                return pages;
+            });
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+            migrated += chunk.size();
+            // Продлеваем блокировку, чтобы долгую миграцию не подхватил второй узел
+            LocalDateTime now = LocalDateTime.now();
+            lockRepository.acquire(MIGRATION_LOCK, sitesList.resolveNodeId(), now, now.plusSeconds(MIGRATION_LOCK_SECONDS));
+        }
+        logger.info("Перенесено содержимое {} страниц", migrated);
+    }
+
+    private byte[] readBody(int siteId, BodyPointer pointer) {
+        return bodyStore.orElseThrow(() -> new IllegalStateException("Хранилище тел страниц не настроено"))
+                .read(siteId, pointer);
+    }
+
+    /**
+     * В базах, созданных до сжатия, колонка content объявлена NOT NULL.
+     */
+    private boolean allowNullContent() {
+        try {
+            String nullable = jdbcTemplate.queryForObject(
+                    "SELECT IS_NULLABLE FROM information_schema.COLUMNS " +
+                            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'page' AND COLUMN_NAME = 'content'",
+                    String.class);
+            if ("NO".equals(nullable)) {
+                jdbcTemplate.execute("ALTER TABLE page MODIFY content MEDIUMTEXT NULL");
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn("Не удалось сделать колонку content необязательной: {}", e.getMessage());
+            return false;
+        }
+    }
+}
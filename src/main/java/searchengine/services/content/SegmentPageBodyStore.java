@@ -0,0 +1,273 @@
+package searchengine.services.content;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import searchengine.config.SitesList;
+import searchengine.model.BodyStoreMarker;
+import searchengine.repository.BodyStoreMarkerRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Тела страниц дописываются в сегментные файлы {@code <body-store-path>/<siteId>/<n>.seg},
+ * а читаются через отображение файла в память. Сброс сайта - удаление его каталога.
+ * Аренды позволяют дообходить и удалять сайт любому узлу, поэтому каталог должен быть
+ * общим для всех узлов; при старте это проверяется по маркеру store.id.
+ */
+@Component
+@ConditionalOnProperty(prefix = "indexing-settings", name = "body-store", havingValue = "segments", matchIfMissing = true)
+public class SegmentPageBodyStore implements PageBodyStore {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentPageBodyStore.class);
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String MARKER_NAME = "segments";
+    private static final String MARKER_FILE = "store.id";
+
+    private final Path root;
+    private final BodyStoreMarkerRepository markerRepository;
+    private final Map<Integer, SegmentWriter> writers = new ConcurrentHashMap<>();
+    private final Map<Path, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+    public SegmentPageBodyStore(SitesList sitesList, BodyStoreMarkerRepository markerRepository) {
+        this.root = Paths.get(sitesList.getBodyStorePath());
+        this.markerRepository = markerRepository;
+    }
+
+    /**
+     * Первый узел создаёт маркер в каталоге и записывает его идентификатор в базу.
+     * Узел, у которого в каталоге маркера нет или он другой, видит не тот диск,
+     * что остальные, и не стартует: его страницы не прочитали бы другие узлы.
+     */
+    @PostConstruct
+    public void verifySharedRoot() {
+        Optional<BodyStoreMarker> marker = markerRepository.findById(MARKER_NAME);
+        if (marker.isEmpty()) {
+            BodyStoreMarker created = new BodyStoreMarker();
+            created.setName(MARKER_NAME);
+            created.setStoreId(createMarkerFile());
+            try {
+                markerRepository.saveAndFlush(created);
+                logger.info("Каталог тел страниц {} зарегистрирован как {}", root.toAbsolutePath(), created.getStoreId());
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Другой узел зарегистрировал каталог одновременно с нами
+                marker = markerRepository.findById(MARKER_NAME);
+            }
+        }
+
+        String expected = marker.map(BodyStoreMarker::getStoreId).orElse(null);
+        String local = readMarkerFile();
+        if (expected == null || !expected.equals(local)) {
+            throw new IllegalStateException("Каталог body-store-path " + root.toAbsolutePath()
+                    + " не тот, с которым работают остальные узлы (ожидался маркер " + expected
+                    + ", найден " + local + "). Укажите общий для всех узлов каталог"
+                    + " или храните тела в таблице page: indexing-settings.body-store: table");
+        }
+    }
+
+    @Override
+    public BodyPointer write(int siteId, byte[] body) {
+        if (body.length > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Тело страницы больше размера сегмента: " + body.length);
+        }
+        SegmentWriter writer = writers.computeIfAbsent(siteId, this::openWriter);
+        synchronized (writer) {
+            try {
+                while (true) {
+                    // В общий каталог пишут несколько узлов: конец файла читается только под блокировкой,
+                    // иначе смещение из памяти этого узла указало бы на чужую запись
+                    try (FileLock lock = writer.channel.lock()) {
+                        long offset = writer.channel.size();
+                        if (offset == 0 || offset + body.length <= SEGMENT_SIZE) {
+                            ByteBuffer buffer = ByteBuffer.wrap(body);
+                            while (buffer.hasRemaining()) {
+                                writer.channel.write(buffer, offset + buffer.position());
+                            }
+                            return new BodyPointer(writer.segment, offset, body.length);
+                        }
+                    }
+                    writer.roll();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ошибка записи тела страницы сайта " + siteId, e);
+            }
+        }
+    }
+
+    @Override
+    public byte[] read(int siteId, BodyPointer pointer) {
+        Path file = segmentPath(siteId, pointer.getSegment());
+        long end = pointer.getOffset() + pointer.getLength();
+
+        MappedByteBuffer mapping = mappings.get(file);
+        if (mapping == null || mapping.capacity() < end) {
+            mapping = map(file, end);
+        }
+
+        byte[] body = new byte[pointer.getLength()];
+        ByteBuffer view = mapping.duplicate();
+        view.position((int) pointer.getOffset());
+        view.get(body);
+        return body;
+    }
+
+    @Override
+    public void deleteSite(int siteId) {
+        SegmentWriter writer = writers.remove(siteId);
+        if (writer != null) {
+            synchronized (writer) {
+                writer.close();
+            }
+        }
+        Path siteDir = root.resolve(String.valueOf(siteId));
+        mappings.keySet().removeIf(path -> path.startsWith(siteDir));
+        if (!Files.exists(siteDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(siteDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    logger.warn("Не удалось удалить {}: {}", path, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Не удалось удалить каталог сайта {}: {}", siteDir, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        writers.values().forEach(writer -> {
+            synchronized (writer) {
+                writer.close();
+            }
+        });
+        writers.clear();
+    }
+
+    /**
+     * Активный сегмент растёт, поэтому отображение пересоздаётся, когда запись лежит за его концом.
+     */
+    private synchronized MappedByteBuffer map(Path file, long end) {
+        MappedByteBuffer mapping = mappings.get(file);
+        if (mapping != null && mapping.capacity() >= end) {
+            return mapping;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < end) {
+                throw new IllegalStateException("Сегмент " + file + " короче ожидаемого: " + size + " < " + end);
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mappings.put(file, mapping);
+            return mapping;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения сегмента " + file, e);
+        }
+    }
+
+    private SegmentWriter openWriter(int siteId) {
+        Path siteDir = root.resolve(String.valueOf(siteId));
+        try {
+            Files.createDirectories(siteDir);
+            int last = 0;
+            try (Stream<Path> files = Files.list(siteDir)) {
+                last = files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                        .mapToInt(name -> Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                        .max()
+                        .orElse(0);
+            }
+            return new SegmentWriter(siteId, last);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть сегмент сайта " + siteId, e);
+        }
+    }
+
+    private String createMarkerFile() {
+        Path file = root.resolve(MARKER_FILE);
+        try {
+            Files.createDirectories(root);
+            String storeId = UUID.randomUUID().toString();
+            Files.write(file, storeId.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW);
+            return storeId;
+        } catch (FileAlreadyExistsException e) {
+            return readMarkerFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать маркер " + file, e);
+        }
+    }
+
+    private String readMarkerFile() {
+        Path file = root.resolve(MARKER_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать маркер " + file, e);
+        }
+    }
+
+    private Path segmentPath(int siteId, int segment) {
+        return root.resolve(String.valueOf(siteId)).resolve(segment + SEGMENT_SUFFIX);
+    }
+
+    private class SegmentWriter {
+        private final int siteId;
+        private int segment;
+        private FileChannel channel;
+
+        SegmentWriter(int siteId, int segment) throws IOException {
+            this.siteId = siteId;
+            open(segment);
+        }
+
+        void roll() throws IOException {
+            channel.force(false);
+            channel.close();
+            open(segment + 1);
+        }
+
+        void close() {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Ошибка закрытия сегмента {} сайта {}: {}", segment, siteId, e.getMessage());
+            }
+        }
+
+        private void open(int segment) throws IOException {
+            this.segment = segment;
+            this.channel = FileChannel.open(segmentPath(siteId, segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+    }
+}
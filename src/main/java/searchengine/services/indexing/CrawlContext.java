@@ -0,0 +1,55 @@
+package searchengine.services.indexing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.services.content.PageContentService;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общее состояние обхода одного сайта, которое разделяют все задачи {@link SiteParser}.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CrawlContext {
+    private static final long MIN_DELAY_MILLIS = 500;
+
+    private final int siteId;
+    private final PageRepository pageRepository;
+    private final SiteRepository siteRepository;
+    private final PageContentService pageContentService;
+    private final RobotsTxt robotsTxt;
+    private final UrlCanonicalizer canonicalizer;
+    private final NearDuplicateIndex duplicateIndex;
+    private final int maxDepth;
+    private final Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
+    private final AtomicLong nextFetchAt = new AtomicLong();
+    private volatile boolean stopped;
+
+    /**
+     * Без Crawl-delay каждая задача, как и раньше, просто выжидает 500 мс перед запросом.
+     * Если robots.txt задаёт Crawl-delay, включается общий для всех задач сайта ограничитель:
+     * каждая задача занимает следующий свободный слот, так что запросы идут не чаще
+     * одного за Crawl-delay при любом числе потоков.
+     */
+    public void awaitFetchSlot() throws InterruptedException {
+        long delay = robotsTxt.getCrawlDelayMillis();
+        if (delay <= 0) {
+            Thread.sleep(MIN_DELAY_MILLIS);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long slot = Math.max(now, nextFetchAt.getAndAccumulate(now, (next, current) -> Math.max(next, current) + delay));
+        if (slot > now) {
+            Thread.sleep(slot - now);
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+}
@@ -3,98 +3,259 @@ package searchengine.services.indexing;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.Exception.IndexingAlreadyStartedException;
 import searchengine.Exception.IndexingNotStartedException;
 import searchengine.Exception.PageOutsideConfigException;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.model.CrawlLease;
+import searchengine.model.LeaseStatus;
 import searchengine.model.SiteEntity;
 import searchengine.model.SiteStatus;
+import searchengine.repository.CrawlLeaseRepository;
+import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.content.PageContentService;
+import searchengine.services.search.SearchIndexSnapshotService;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+/**
+ * Индексация распределяется между узлами через аренды в таблице crawl_lease:
+ * startIndexing создаёт аренды со статусом PENDING, каждый узел забирает свободные
+ * и просроченные аренды, продлевает свои и останавливает обход, если аренду потерял.
+ */
 @Service
 @RequiredArgsConstructor
 public class IndexingServiceImpl implements IndexingService {
     private static final Logger logger = LoggerFactory.getLogger(IndexingServiceImpl.class);
+    private static final int MAX_DEPTH = 10;
+    private static final Set<LeaseStatus> ACTIVE_STATUSES = EnumSet.of(LeaseStatus.PENDING, LeaseStatus.RUNNING);
 
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
+    private final CrawlLeaseRepository leaseRepository;
+    private final LemmaRepository lemmaRepository;
+    private final PageContentService pageContentService;
+    private final SearchIndexSnapshotService snapshotService;
     private final SitesList sitesList;
-    private ForkJoinPool forkJoinPool;
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool();
+    private final Set<String> claimedSites = ConcurrentHashMap.newKeySet();
+    private final Map<String, CrawlContext> activeCrawls = new ConcurrentHashMap<>();
+    private String nodeId;
+
+    @PostConstruct
+    public void init() {
+        nodeId = sitesList.resolveNodeId();
+        logger.info("Узел индексации: {}", nodeId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        activeCrawls.values().forEach(CrawlContext::stop);
+        forkJoinPool.shutdownNow();
+    }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public synchronized void startIndexing() throws IndexingAlreadyStartedException {
-        if (forkJoinPool != null && !forkJoinPool.isShutdown()) {
+        stopRemovedSites();
+        if (leaseRepository.existsByStatusIn(ACTIVE_STATUSES)) {
+            throw new IndexingAlreadyStartedException("Индексация уже запущена");
+        }
+
+        try {
+            for (Site site : sitesList.getSites()) {
+                CrawlLease lease = leaseRepository.findBySiteUrl(site.getUrl()).orElseGet(CrawlLease::new);
+                lease.setSiteUrl(site.getUrl());
+                lease.setStatus(LeaseStatus.PENDING);
+                lease.setOwner(null);
+                lease.setExpiresAt(null);
+                leaseRepository.saveAndFlush(lease);
+            }
+        } catch (DataAccessException e) {
+            // Версия или уникальный ключ не совпали: индексацию одновременно запустил другой узел
             throw new IndexingAlreadyStartedException("Индексация уже запущена");
         }
 
-        sitesList.getSites().forEach(site -> {
-            List<SiteEntity> existingSite = siteRepository.findByUrl(site.getUrl());
-            if (existingSite != null) {
-                try {
-                    siteRepository.deleteAll(existingSite); // Каскадное удаление сработает
-                } catch (Exception e) {
-                    logger.warn("Ошибка при удалении сайта {}: {}", site.getUrl(), e.getMessage());
+        claimSites();
+    }
+
+    @Scheduled(fixedDelayString = "${indexing-settings.lease-poll-ms:5000}")
+    public synchronized void claimSites() {
+        LocalDateTime now = LocalDateTime.now();
+        for (CrawlLease lease : leaseRepository.findClaimable(now)) {
+            if (claimedSites.size() >= sitesList.getMaxSitesPerNode()) {
+                return;
+            }
+            Optional<Site> site = findSite(lease.getSiteUrl());
+            if (site.isEmpty()) {
+                // Сайт убрали из конфигурации: аренду никто не заберёт, поэтому освобождаем её
+                if (leaseRepository.release(lease.getId(), lease.getVersion()) == 1) {
+                    logger.info("Аренда сайта {} остановлена: сайта нет в конфигурации", lease.getSiteUrl());
                 }
+                continue;
             }
-        });
-        forkJoinPool = new ForkJoinPool();
-
-        for (Site site : sitesList.getSites()) {
-            forkJoinPool.execute(() -> {
-                SiteEntity siteEntity = new SiteEntity();
-                siteEntity.setUrl(site.getUrl());
-                siteEntity.setName(site.getName());
-                siteEntity.setStatus(SiteStatus.INDEXING);
-                siteEntity.setStatus_time(LocalDateTime.now());
-
-                try {
-                    siteEntity = siteRepository.saveAndFlush(siteEntity); // Сохраняем сначала сайт
-
-                    SiteParser parser = new SiteParser(
-                            site.getUrl(),
-                            siteEntity.getId(), // передаём только ID
-                            pageRepository,
-                            siteRepository,
-                            10,
-                            0
-                    );
-
-
-                    parser.invoke(); // Синхронный вызов
-
-                    siteEntity.setStatus(SiteStatus.INDEXED);
-                    siteRepository.saveAndFlush(siteEntity);
-
-                } catch (Exception e) {
-                    logger.error("Error indexing site {}: {}", site.getUrl(), e.getMessage());
-                    if (siteEntity.getId() > 0) {
-                        siteEntity.setStatus(SiteStatus.FAILED);
-                        siteEntity.setLastError(e.getMessage());
-                        siteRepository.saveAndFlush(siteEntity);
-                    }
+            if (claimedSites.contains(lease.getSiteUrl())) {
+                continue;
+            }
+
+            LocalDateTime expiresAt = now.plusSeconds(sitesList.getLeaseSeconds());
+            if (leaseRepository.claim(lease.getId(), lease.getVersion(), nodeId, now, expiresAt) != 1) {
+                continue;
+            }
+            if (lease.getStatus() == LeaseStatus.RUNNING) {
+                logger.info("Аренда сайта {} просрочена узлом {}, обход перезапускается", lease.getSiteUrl(), lease.getOwner());
+            }
+            claimedSites.add(lease.getSiteUrl());
+            forkJoinPool.execute(() -> crawlSite(site.get()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${indexing-settings.heartbeat-ms:10000}")
+    public void heartbeat() {
+        for (String siteUrl : claimedSites) {
+            if (renewLease(siteUrl)) continue;
+
+            CrawlContext context = activeCrawls.get(siteUrl);
+            if (context != null && !context.isStopped()) {
+                logger.warn("Аренда сайта {} потеряна или остановлена, обход прерывается", siteUrl);
+                context.stop();
+            }
+        }
+    }
+
+    private void crawlSite(Site site) {
+        String siteUrl = site.getUrl();
+        SiteEntity siteEntity = new SiteEntity();
+        CrawlContext context = null;
+        try {
+            deleteSiteData(siteUrl);
+
+            siteEntity.setUrl(siteUrl);
+            siteEntity.setName(site.getName());
+            siteEntity.setStatus(SiteStatus.INDEXING);
+            siteEntity.setStatus_time(LocalDateTime.now());
+            siteEntity = siteRepository.saveAndFlush(siteEntity); // Сохраняем сначала сайт
+
+            RobotsTxt robotsTxt = RobotsTxt.load(siteUrl);
+            List<SitemapEntry> sitemapEntries = new SitemapLoader().load(siteUrl, robotsTxt);
+            UrlCanonicalizer canonicalizer = new UrlCanonicalizer(siteUrl, site.getCanonical());
+
+            context = new CrawlContext(
+                    siteEntity.getId(), // передаём только ID
+                    pageRepository,
+                    siteRepository,
+                    pageContentService,
+                    robotsTxt,
+                    canonicalizer,
+                    new NearDuplicateIndex(),
+                    MAX_DEPTH
+            );
+            activeCrawls.put(siteUrl, context);
+            if (!renewLease(siteUrl)) {
+                context.stop();
+            }
+
+            // Корень и все адреса из sitemap стартуют с нулевой глубины,
+            // чтобы обход сразу шёл вширь, а не только по ссылкам с главной
+            List<SiteParser> seeds = new ArrayList<>();
+            seeds.add(new SiteParser(canonicalizer.canonicalize(siteUrl), context, 0));
+            for (SitemapEntry entry : sitemapEntries) {
+                String url = canonicalizer.canonicalize(entry.getUrl());
+                if (url != null) {
+                    seeds.add(new SiteParser(url, context, 0));
                 }
-            });
+            }
+
+            ForkJoinTask.invokeAll(seeds); // Синхронный вызов
+
+            // Остановленный или перехваченный обход не трогает запись сайта:
+            // её уже обновил stopIndexing или пересоздал новый владелец аренды
+            if (!context.isStopped() && leaseRepository.finish(siteUrl, nodeId, LeaseStatus.DONE) == 1) {
+                // Частоты и max_rank лемм и суммы rank страниц нужны поиску
+                // для отсечения частых слов и границ MaxScore
+                lemmaRepository.refreshStatistics(siteEntity.getId());
+                pageRepository.refreshRankNorms(siteEntity.getId());
+                snapshotService.write(siteEntity.getId());
+                siteEntity.setStatus(SiteStatus.INDEXED);
+                siteRepository.saveAndFlush(siteEntity);
+            }
+
+        } catch (Exception e) {
+            logger.error("Error indexing site {}: {}", siteUrl, e.getMessage());
+            if ((context == null || !context.isStopped())
+                    && leaseRepository.finish(siteUrl, nodeId, LeaseStatus.FAILED) == 1
+                    && siteEntity.getId() > 0) {
+                siteEntity.setStatus(SiteStatus.FAILED);
+                siteEntity.setLastError(e.getMessage());
+                siteRepository.saveAndFlush(siteEntity);
+            }
+        } finally {
+            activeCrawls.remove(siteUrl);
+            claimedSites.remove(siteUrl);
         }
     }
 
+    private void deleteSiteData(String siteUrl) {
+        List<SiteEntity> existingSite = siteRepository.findByUrl(siteUrl);
+        if (existingSite != null) {
+            try {
+                List<Integer> siteIds = existingSite.stream().map(SiteEntity::getId).toList();
+                siteRepository.deleteAll(existingSite); // Каскадное удаление сработает
+                // Файлы тел удаляются только после строк, которые на них ссылаются
+                siteIds.forEach(pageContentService::deleteSite);
+                siteIds.forEach(snapshotService::delete);
+            } catch (Exception e) {
+                logger.warn("Ошибка при удалении сайта {}: {}", siteUrl, e.getMessage());
+            }
+        }
+    }
+
+    private void stopRemovedSites() {
+        List<String> siteUrls = sitesList.getSites().stream().map(Site::getUrl).toList();
+        int stopped = siteUrls.isEmpty() ? leaseRepository.stopAll() : leaseRepository.stopMissing(siteUrls);
+        if (stopped > 0) {
+            logger.info("Остановлено аренд сайтов, удалённых из конфигурации: {}", stopped);
+        }
+    }
+
+    private boolean renewLease(String siteUrl) {
+        LocalDateTime now = LocalDateTime.now();
+        return leaseRepository.heartbeat(siteUrl, nodeId, now, now.plusSeconds(sitesList.getLeaseSeconds())) == 1;
+    }
+
+    private Optional<Site> findSite(String siteUrl) {
+        return sitesList.getSites().stream()
+                .filter(site -> site.getUrl().equals(siteUrl))
+                .findFirst();
+    }
+
     @Override
     @Transactional
     public void stopIndexing() throws IndexingNotStartedException {
-        if (forkJoinPool == null || forkJoinPool.isShutdown()) {
+        if (!leaseRepository.existsByStatusIn(ACTIVE_STATUSES)) {
             throw new IndexingNotStartedException("Индексация не запущена");
         }
 
-        forkJoinPool.shutdown();
+        // Остальные узлы увидят статус STOPPED при следующем продлении аренды
+        leaseRepository.stopAll();
+        activeCrawls.values().forEach(CrawlContext::stop);
 
         List<SiteEntity> indexingSites = siteRepository.findByStatus(SiteStatus.INDEXING);
         indexingSites.forEach(site -> {
@@ -103,8 +264,6 @@ public class IndexingServiceImpl implements IndexingService {
             site.setStatus_time(LocalDateTime.now());
             siteRepository.save(site);
         });
-
-        forkJoinPool = null;
     }
 
-}
\ No newline at end of file
+}
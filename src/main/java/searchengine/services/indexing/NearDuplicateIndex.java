@@ -0,0 +1,76 @@
+package searchengine.services.indexing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Поиск почти дубликатов среди страниц одного сайта по SimHash.
+ * Хэш делится на {@value #BANDS} полосы по 16 бит: если два хэша отличаются не более чем
+ * в {@value #MAX_DISTANCE} битах, хотя бы одна полоса у них совпадает целиком,
+ * поэтому сравнивать приходится только с кандидатами из тех же корзин.
+ */
+public class NearDuplicateIndex {
+
+    public static final int MAX_DISTANCE = 3;
+    private static final int BANDS = MAX_DISTANCE + 1;
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final long BAND_MASK = (1L << BAND_BITS) - 1;
+
+    private final Map<Long, List<Entry>> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Возвращает id страницы, от которой хэш отличается не более чем на {@value #MAX_DISTANCE} бит,
+     * или null, если такой страницы нет.
+     */
+    private Integer findDuplicate(long simhash) {
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> bucket = buckets.get(bucketKey(simhash, band));
+            if (bucket == null) continue;
+            for (Entry entry : bucket) {
+                if (SimHash.distance(simhash, entry.simhash) <= MAX_DISTANCE) {
+                    return entry.pageId;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Атомарно ищет почти дубликат и, если его нет, сохраняет страницу как оригинал
+     * через {@code saveOriginal} и добавляет её в индекс. Возвращает id найденного оригинала
+     * или null, если страница сама стала оригиналом.
+     */
+    public synchronized Integer findOrAdd(long simhash, IntSupplier saveOriginal) {
+        Integer originalId = findDuplicate(simhash);
+        if (originalId != null) {
+            return originalId;
+        }
+        add(simhash, saveOriginal.getAsInt());
+        return null;
+    }
+
+    private void add(long simhash, int pageId) {
+        Entry entry = new Entry(simhash, pageId);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.computeIfAbsent(bucketKey(simhash, band), key -> new CopyOnWriteArrayList<>()).add(entry);
+        }
+    }
+
+    private static long bucketKey(long simhash, int band) {
+        long value = (simhash >>> (band * BAND_BITS)) & BAND_MASK;
+        return ((long) band << BAND_BITS) | value;
+    }
+
+    private static class Entry {
+        private final long simhash;
+        private final int pageId;
+
+        Entry(long simhash, int pageId) {
+            this.simhash = simhash;
+            this.pageId = pageId;
+        }
+    }
+}
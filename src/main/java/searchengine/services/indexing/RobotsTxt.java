@@ -0,0 +1,204 @@
+package searchengine.services.indexing;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt для нашего бота: Allow/Disallow, Crawl-delay и ссылки на sitemap.
+ * Файл читается построчно из потока ответа, целиком в память не загружается.
+ */
+public class RobotsTxt {
+    private static final Logger logger = LoggerFactory.getLogger(RobotsTxt.class);
+
+    public static final String BOT_NAME = "MySearchBot";
+
+    private final List<Rule> rules;
+    private final long crawlDelayMillis;
+    private final List<String> sitemaps;
+
+    private RobotsTxt(List<Rule> rules, long crawlDelayMillis, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMillis = crawlDelayMillis;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsTxt empty() {
+        return new RobotsTxt(Collections.emptyList(), 0, Collections.emptyList());
+    }
+
+    public static RobotsTxt load(String siteUrl) {
+        String robotsUrl = siteUrl.replaceAll("/+$", "") + "/robots.txt";
+        try {
+            Connection.Response response = Jsoup.connect(robotsUrl)
+                    .userAgent(SiteParser.USER_AGENT)
+                    .timeout(10000)
+                    .ignoreHttpErrors(true)
+                    .ignoreContentType(true)
+                    .maxBodySize(0)
+                    .execute();
+
+            if (response.statusCode() != 200) {
+                logger.info("robots.txt не найден для {}: HTTP {}", siteUrl, response.statusCode());
+                return empty();
+            }
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.bodyStream(), StandardCharsets.UTF_8))) {
+                return parse(reader);
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось загрузить robots.txt для {}: {}", siteUrl, e.getMessage());
+            return empty();
+        }
+    }
+
+    public static RobotsTxt parse(BufferedReader reader) throws IOException {
+        List<Rule> botRules = new ArrayList<>();
+        List<Rule> anyRules = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        long botDelay = -1;
+        long anyDelay = -1;
+        boolean botGroupFound = false;
+
+        boolean forBot = false;
+        boolean forAny = false;
+        boolean readingAgents = false;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int comment = line.indexOf('#');
+            if (comment != -1) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon == -1) continue;
+
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (field) {
+                case "user-agent" -> {
+                    if (!readingAgents) {
+                        forBot = false;
+                        forAny = false;
+                        readingAgents = true;
+                    }
+                    // Сравнивается токен продукта целиком, без версии: "MySearchBot/1.0" -> "MySearchBot"
+                    int slash = value.indexOf('/');
+                    String agent = (slash == -1 ? value : value.substring(0, slash)).trim();
+                    if (agent.equals("*")) {
+                        forAny = true;
+                    } else if (!agent.isEmpty() && agent.equalsIgnoreCase(BOT_NAME)) {
+                        forBot = true;
+                        botGroupFound = true;
+                    }
+                }
+                case "allow", "disallow" -> {
+                    readingAgents = false;
+                    if (value.isEmpty()) continue;
+                    Rule rule = new Rule(value, field.equals("allow"));
+                    if (forBot) botRules.add(rule);
+                    if (forAny) anyRules.add(rule);
+                }
+                case "crawl-delay" -> {
+                    readingAgents = false;
+                    long delay = parseDelay(value);
+                    if (forBot) botDelay = delay;
+                    if (forAny) anyDelay = delay;
+                }
+                case "sitemap" -> {
+                    if (!value.isEmpty()) sitemaps.add(value);
+                }
+                default -> readingAgents = false;
+            }
+        }
+
+        return botGroupFound
+                ? new RobotsTxt(botRules, Math.max(botDelay, 0), sitemaps)
+                : new RobotsTxt(anyRules, Math.max(anyDelay, 0), sitemaps);
+    }
+
+    /**
+     * Проверяет путь (с query-строкой) по правилам: побеждает самое длинное совпадение,
+     * при равной длине - Allow.
+     */
+    public boolean isAllowed(String path) {
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (!rule.matches(path)) continue;
+            if (best == null
+                    || rule.length() > best.length()
+                    || (rule.length() == best.length() && rule.allow)) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    public long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static long parseDelay(String value) {
+        try {
+            return (long) (Double.parseDouble(value) * 1000);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class Rule {
+        private final String pattern;
+        private final boolean allow;
+        private final Pattern regex;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.regex = compile(pattern);
+        }
+
+        int length() {
+            return pattern.length();
+        }
+
+        boolean matches(String path) {
+            return regex == null ? path.startsWith(pattern) : regex.matcher(path).lookingAt();
+        }
+
+        private static Pattern compile(String pattern) {
+            if (pattern.indexOf('*') == -1 && !pattern.endsWith("$")) {
+                return null;
+            }
+            boolean anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (regex.length() > 0) regex.append(".*");
+                regex.append(Pattern.quote(part));
+            }
+            if (anchored) regex.append("$");
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.services.indexing;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.Locale;
+
+/**
+ * 64-битный SimHash основного текста страницы по шинглам из трёх слов.
+ * У почти одинаковых текстов хэши отличаются в небольшом числе бит.
+ */
+public final class SimHash {
+
+    private static final int SHINGLE_SIZE = 3;
+    private static final int MIN_WORDS = 50;
+    private static final String BOILERPLATE =
+            "nav, header, footer, aside, script, style, noscript, form, [role=navigation], [role=banner], [role=contentinfo]";
+
+    private SimHash() {
+    }
+
+    /**
+     * Хэш только основного содержимого: общие для всего сайта меню, шапка и подвал
+     * иначе сближают хэши разных коротких статей.
+     */
+    public static Long compute(Document doc) {
+        Document copy = doc.clone();
+        copy.select(BOILERPLATE).remove();
+
+        Element content = copy.selectFirst("main, [role=main]");
+        if (content == null) {
+            Elements articles = copy.select("article");
+            content = articles.size() == 1 ? articles.first() : copy.body();
+        }
+        return content == null ? null : compute(content.text());
+    }
+
+    /**
+     * Возвращает null для слишком коротких текстов: на них сравнение даёт ложные совпадения.
+     */
+    public static Long compute(String text) {
+        if (text == null) {
+            return null;
+        }
+        String[] words = text.toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{Nd}\\s]", " ")
+                .trim()
+                .split("\\s+");
+        if (words.length < MIN_WORDS) {
+            return null;
+        }
+
+        int[] weights = new int[64];
+        StringBuilder shingle = new StringBuilder();
+        for (int i = 0; i + SHINGLE_SIZE <= words.length; i++) {
+            shingle.setLength(0);
+            for (int j = i; j < i + SHINGLE_SIZE; j++) {
+                shingle.append(words[j]).append(' ');
+            }
+            long hash = hash64(shingle);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1L) == 1L ? 1 : -1;
+            }
+        }
+
+        long result = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                result |= 1L << bit;
+            }
+        }
+        return result;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * FNV-1a с финальным перемешиванием из MurmurHash3, чтобы биты были распределены равномерно.
+     */
+    private static long hash64(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -10,14 +10,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import searchengine.model.Page;
 import searchengine.model.SiteEntity;
-import searchengine.repository.PageRepository;
-import searchengine.repository.SiteRepository;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.RecursiveAction;
@@ -25,13 +24,10 @@ import java.util.concurrent.RecursiveAction;
 @RequiredArgsConstructor
 public class SiteParser extends RecursiveAction {
     private static final Logger logger = LoggerFactory.getLogger(SiteParser.class);
-    private static final Set<String> visitedUrls = Collections.synchronizedSet(new HashSet<>());
+    static final String USER_AGENT = "Mozilla/5.0 (compatible; " + RobotsTxt.BOT_NAME + "/1.0)";
 
     private final String url;
-    private final int siteId;
-    private final PageRepository pageRepository;
-    private final SiteRepository siteRepository;
-    private final int maxDepth;
+    private final CrawlContext context;
     private final int currentDepth;
 
 
@@ -42,17 +38,21 @@ public class SiteParser extends RecursiveAction {
     @Override
     protected void compute() {
         try {
-            String normalizedUrl = normalizeUrl(url);
-            if (currentDepth >= maxDepth || visitedUrls.contains(normalizedUrl) || !isValidUrl(url)) {
+            if (context.isStopped()) {
+                return;
+            }
+            if (currentDepth >= context.getMaxDepth() || !isValidUrl(url) || !context.getVisitedUrls().add(url)) {
                 logger.info("Пропущен URL (глубина/повтор/некорректный): {}", url);
                 return;
             }
 
-            visitedUrls.add(normalizedUrl);
-            Thread.sleep(500);
+            context.awaitFetchSlot();
+            if (context.isStopped()) {
+                return;
+            }
 
             Connection.Response response = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0 (compatible; MySearchBot/1.0)")
+                    .userAgent(USER_AGENT)
                     .referrer("http://www.google.com")
                     .timeout(10000)
                     .ignoreHttpErrors(true)
@@ -66,9 +66,23 @@ public class SiteParser extends RecursiveAction {
                 return;
             }
 
+            String pageUrl = resolveFetchedUrl(response);
+            if (pageUrl == null) {
+                logger.info("Пропускаем URL {}: перенаправление на {} уже обработано или ведёт за пределы сайта",
+                        url, response.url());
+                return;
+            }
+
             Document doc = response.parse();
-            savePage(doc, statusCode);
-            processLinks(doc);
+            String canonicalUrl = resolveCanonicalUrl(doc, pageUrl);
+            if (canonicalUrl != null) {
+                // Пагинация и списки тегов ссылаются на первую страницу как на каноническую:
+                // копию не сохраняем, каноническую страницу загружаем отдельно, ссылки обходим
+                logger.info("Не сохраняем URL {}: каноническая страница {}", pageUrl, canonicalUrl);
+            } else {
+                savePage(doc, statusCode, pageUrl);
+            }
+            processLinks(doc, canonicalUrl);
 
         } catch (IOException | InterruptedException e) {
             logger.error("Ошибка при обработке {}: {}", url, e.getMessage());
@@ -77,32 +91,47 @@ public class SiteParser extends RecursiveAction {
         }
     }
 
-    private void savePage(Document doc, int statusCode) {
+    private void savePage(Document doc, int statusCode, String pageUrl) {
         try {
-            Optional<SiteEntity> siteOpt = siteRepository.findById(siteId);
+            Optional<SiteEntity> siteOpt = context.getSiteRepository().findById(context.getSiteId());
             if (siteOpt.isEmpty()) {
-                logger.warn("Сайт с id={} не найден", siteId);
+                logger.warn("Сайт с id={} не найден", context.getSiteId());
                 return;
             }
             SiteEntity site = siteOpt.get();
+            String path = toPath(site, pageUrl);
 
-            String path = url.replaceFirst(site.getUrl(), "");
-            if (path.isEmpty() || path.isBlank()) {
-                path = "/";
-            }
-
-            if (pageRepository.findBySiteAndPath(site, path).isPresent()) {
+            if (context.getPageRepository().findBySiteAndPath(site, path).isPresent()) {
                 logger.debug("Страница уже существует: {}", path);
                 return;
             }
 
+            Long simhash = SimHash.compute(doc);
+
             Page page = new Page();
             page.setSite(site);
             page.setPath(path);
             page.setCode(statusCode);
-            page.setContent(doc.html());
+            page.setSimhash(simhash);
+
+            Integer originalId = null;
+            if (simhash == null) {
+                context.getPageContentService().setContent(page, doc.html());
+                context.getPageRepository().saveAndFlush(page);
+            } else {
+                originalId = context.getDuplicateIndex().findOrAdd(simhash, () -> {
+                    context.getPageContentService().setContent(page, doc.html());
+                    return context.getPageRepository().saveAndFlush(page).getId();
+                });
+            }
 
-            pageRepository.saveAndFlush(page);
+            if (originalId != null) {
+                // У дубликата нет тела ни в таблице, ни в хранилище: содержимое берётся у оригинала
+                page.setDuplicateOf(context.getPageRepository().getReferenceById(originalId));
+                context.getPageRepository().saveAndFlush(page);
+                logger.info("Сохранена ссылка на дубликат: {} -> id={}", path, originalId);
+                return;
+            }
             logger.info("Сохранена страница: {}", path);
 
         } catch (Exception e) {
@@ -110,25 +139,80 @@ public class SiteParser extends RecursiveAction {
         }
     }
 
-    private void processLinks(Document doc) {
+    /**
+     * Адрес, по которому страница на самом деле отдана сервером после перенаправлений.
+     * Возвращает null, если этот адрес уже взят в обход или не относится к сайту.
+     */
+    private String resolveFetchedUrl(Connection.Response response) {
+        String fetchedUrl = context.getCanonicalizer().canonicalize(response.url().toString());
+        if (fetchedUrl == null || fetchedUrl.equals(url)) {
+            return url;
+        }
+        if (!isValidUrl(fetchedUrl)) {
+            return null;
+        }
+        return context.getVisitedUrls().add(fetchedUrl) ? fetchedUrl : null;
+    }
+
+    /**
+     * Адрес из {@code <link rel=canonical>}, если он указывает на другую страницу этого сайта,
+     * иначе null.
+     */
+    private String resolveCanonicalUrl(Document doc, String pageUrl) {
+        if (!context.getCanonicalizer().isHonorCanonicalLink()) {
+            return null;
+        }
+        Element link = doc.selectFirst("link[rel=canonical][href]");
+        if (link == null) {
+            return null;
+        }
+        String canonicalUrl = context.getCanonicalizer().canonicalize(link.absUrl("href"));
+        if (canonicalUrl == null || canonicalUrl.equals(pageUrl) || !isValidUrl(canonicalUrl)) {
+            return null;
+        }
+        return canonicalUrl;
+    }
+
+    private String toPath(SiteEntity site, String pageUrl) {
+        String siteUrl = site.getUrl().replaceAll("/+$", "");
+        String path;
+        if (pageUrl.startsWith(siteUrl)) {
+            path = pageUrl.substring(siteUrl.length());
+        } else {
+            URI uri = URI.create(pageUrl);
+            path = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        }
+        if (path == null || path.isBlank()) {
+            return "/";
+        }
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+    private void processLinks(Document doc, String canonicalUrl) {
         Elements links = doc.select("a[href]");
-        Set<SiteParser> tasks = new HashSet<>();
+        Set<String> childUrls = new HashSet<>();
+        List<SiteParser> tasks = new ArrayList<>();
+
+        // Каноническая страница - тот же документ, поэтому идёт на той же глубине
+        if (canonicalUrl != null && !context.getVisitedUrls().contains(canonicalUrl)) {
+            childUrls.add(canonicalUrl);
+            tasks.add(new SiteParser(canonicalUrl, context, currentDepth));
+        }
 
         for (Element link : links) {
-            String childUrl = link.absUrl("href");
+            // Канонизация один раз на ссылку, до проверки на повтор
+            String childUrl = context.getCanonicalizer().canonicalize(link.absUrl("href"));
+            if (childUrl == null || context.getVisitedUrls().contains(childUrl) || !childUrls.add(childUrl)) {
+                continue;
+            }
             if (isValidUrl(childUrl)) {
-                tasks.add(new SiteParser(
-                        childUrl,
-                        siteId,
-                        pageRepository,
-                        siteRepository,
-                        maxDepth,
-                        currentDepth + 1
-                ));
+                tasks.add(new SiteParser(childUrl, context, currentDepth + 1));
             }
         }
 
-        invokeAll(tasks);
+        if (!context.isStopped()) {
+            invokeAll(tasks);
+        }
     }
 
     private boolean isContentTypeSupported(String contentType) {
@@ -141,17 +225,16 @@ public class SiteParser extends RecursiveAction {
 
     private boolean isValidUrl(String rawUrl) {
         try {
-            Optional<SiteEntity> siteOpt = siteRepository.findById(siteId);
-            if (siteOpt.isEmpty()) return false;
-
-            URI base = new URI(siteOpt.get().getUrl()).normalize();
-            URI target = new URI(rawUrl).normalize();
-
-            if (target.getHost() == null || base.getHost() == null) {
+            URI target = new URI(rawUrl);
+            if (!context.getCanonicalizer().isSameSite(rawUrl)) {
                 return false;
             }
 
-            if (!target.getHost().equals(base.getHost()) || rawUrl.contains("#")) {
+            String robotsPath = target.getRawPath() == null || target.getRawPath().isEmpty() ? "/" : target.getRawPath();
+            if (target.getRawQuery() != null) {
+                robotsPath += "?" + target.getRawQuery();
+            }
+            if (!context.getRobotsTxt().isAllowed(robotsPath)) {
                 return false;
             }
 
@@ -172,12 +255,4 @@ public class SiteParser extends RecursiveAction {
         }
     }
 
-    private String normalizeUrl(String url) {
-        try {
-            return new URI(url).normalize().toString();
-        } catch (URISyntaxException e) {
-            return url;
-        }
-    }
-
 }
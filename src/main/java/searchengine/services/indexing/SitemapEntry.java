@@ -0,0 +1,13 @@
+package searchengine.services.indexing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Getter
+@RequiredArgsConstructor
+public class SitemapEntry {
+    private final String url;
+    private final LocalDateTime lastModified;
+}
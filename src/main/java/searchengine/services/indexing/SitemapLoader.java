@@ -0,0 +1,177 @@
+package searchengine.services.indexing;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Загружает sitemap.xml сайта (включая sitemap index и .gz-файлы) потоковым StAX-разбором
+ * и возвращает адреса страниц с датами lastmod.
+ */
+public class SitemapLoader {
+    private static final Logger logger = LoggerFactory.getLogger(SitemapLoader.class);
+
+    private static final String SITEMAP_NS = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    private static final int MAX_INDEX_DEPTH = 3;
+    private static final int MAX_ENTRIES = 50_000;
+
+    private final XMLInputFactory xmlFactory;
+    private final Set<String> loadedSitemaps = new HashSet<>();
+    private final List<SitemapEntry> entries = new ArrayList<>();
+
+    public SitemapLoader() {
+        xmlFactory = XMLInputFactory.newFactory();
+        xmlFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Возвращает записи из всех sitemap, перечисленных в robots.txt, либо из /sitemap.xml,
+     * если robots.txt их не указывает. Свежие страницы идут первыми.
+     */
+    public List<SitemapEntry> load(String siteUrl, RobotsTxt robotsTxt) {
+        List<String> sitemaps = robotsTxt.getSitemaps();
+        if (sitemaps.isEmpty()) {
+            sitemaps = List.of(siteUrl.replaceAll("/+$", "") + "/sitemap.xml");
+        }
+        for (String sitemapUrl : sitemaps) {
+            loadSitemap(sitemapUrl, 0);
+        }
+
+        entries.sort(Comparator.comparing(SitemapEntry::getLastModified,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        logger.info("Из sitemap для {} получено {} адресов", siteUrl, entries.size());
+        return entries;
+    }
+
+    private void loadSitemap(String sitemapUrl, int depth) {
+        if (depth > MAX_INDEX_DEPTH || entries.size() >= MAX_ENTRIES || !loadedSitemaps.add(sitemapUrl)) {
+            return;
+        }
+        try {
+            Connection.Response response = Jsoup.connect(sitemapUrl)
+                    .userAgent(SiteParser.USER_AGENT)
+                    .timeout(10000)
+                    .ignoreHttpErrors(true)
+                    .ignoreContentType(true)
+                    .maxBodySize(0)
+                    .execute();
+
+            if (response.statusCode() != 200) {
+                logger.info("Sitemap {} недоступен: HTTP {}", sitemapUrl, response.statusCode());
+                return;
+            }
+
+            List<String> nested = new ArrayList<>();
+            try (InputStream in = unwrapGzip(response.bodyStream())) {
+                parse(in, nested);
+            }
+            for (String child : nested) {
+                loadSitemap(child, depth + 1);
+            }
+        } catch (IOException | XMLStreamException e) {
+            logger.warn("Ошибка при чтении sitemap {}: {}", sitemapUrl, e.getMessage());
+        }
+    }
+
+    private void parse(InputStream in, List<String> nested) throws XMLStreamException {
+        XMLStreamReader reader = xmlFactory.createXMLStreamReader(in);
+        try {
+            boolean inSitemap = false;
+            String loc = null;
+            String lastmod = null;
+
+            while (reader.hasNext() && entries.size() < MAX_ENTRIES) {
+                int event = reader.next();
+                // Элементы расширений (image:loc, video:loc и т.п.) не должны подменять адрес страницы
+                if (!isSitemapElement(reader)) {
+                    continue;
+                }
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "sitemap" -> inSitemap = true;
+                        case "url" -> inSitemap = false;
+                        case "loc" -> loc = reader.getElementText().trim();
+                        case "lastmod" -> lastmod = reader.getElementText().trim();
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ((name.equals("url") || name.equals("sitemap")) && loc != null && !loc.isEmpty()) {
+                        if (inSitemap) {
+                            nested.add(loc);
+                        } else {
+                            entries.add(new SitemapEntry(loc, parseLastmod(lastmod)));
+                        }
+                    }
+                    if (name.equals("url") || name.equals("sitemap")) {
+                        loc = null;
+                        lastmod = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Элемент схемы sitemap 0.9; файлы без объявленного пространства имён тоже принимаются.
+     */
+    private static boolean isSitemapElement(XMLStreamReader reader) {
+        if (!reader.isStartElement() && !reader.isEndElement()) {
+            return false;
+        }
+        String namespace = reader.getNamespaceURI();
+        return namespace == null || namespace.isEmpty() || namespace.equals(SITEMAP_NS);
+    }
+
+    private InputStream unwrapGzip(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(buffered);
+        }
+        return buffered;
+    }
+
+    static LocalDateTime parseLastmod(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            return OffsetDateTime.parse(value).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(value);
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package searchengine.services.indexing;
+
+import searchengine.config.CanonicalRules;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Приводит ссылки сайта к единому виду, чтобы один и тот же документ
+ * не загружался и не сохранялся под разными адресами.
+ */
+public class UrlCanonicalizer {
+
+    private final String siteHost;
+    private final CanonicalRules rules;
+    private final Set<String> hostAliases;
+
+    public UrlCanonicalizer(String siteUrl, CanonicalRules rules) {
+        this.rules = rules == null ? new CanonicalRules() : rules;
+        this.siteHost = URI.create(siteUrl.trim()).getHost().toLowerCase(Locale.ROOT);
+        this.hostAliases = this.rules.getHostAliases().stream()
+                .map(host -> host.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Возвращает канонический адрес или null, если ссылка не http(s) или не разбирается.
+     */
+    public String canonicalize(String rawUrl) {
+        if (rawUrl == null || rawUrl.isBlank()) {
+            return null;
+        }
+        try {
+            URI uri = new URI(rawUrl.trim()).normalize();
+
+            String scheme = uri.getScheme();
+            if (scheme == null) return null;
+            scheme = scheme.toLowerCase(Locale.ROOT);
+            if (!scheme.equals("http") && !scheme.equals("https")) return null;
+
+            String host = uri.getHost();
+            if (host == null) return null;
+            host = foldHost(host.toLowerCase(Locale.ROOT));
+
+            int port = uri.getPort();
+            if ((scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443)) {
+                port = -1;
+            }
+
+            String path = uri.getRawPath();
+            if (path == null || path.isEmpty()) {
+                path = "/";
+            }
+            path = path.replaceAll("/{2,}", "/");
+            if (rules.isRemoveTrailingSlash() && path.length() > 1 && path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+
+            String query = canonicalQuery(uri.getRawQuery());
+
+            StringBuilder result = new StringBuilder(scheme).append("://").append(host);
+            if (port != -1) {
+                result.append(':').append(port);
+            }
+            result.append(path);
+            if (!query.isEmpty()) {
+                result.append('?').append(query);
+            }
+            return result.toString();
+
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    public boolean isSameSite(String canonicalUrl) {
+        try {
+            String host = new URI(canonicalUrl).getHost();
+            return siteHost.equals(host);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    public boolean isHonorCanonicalLink() {
+        return rules.isHonorCanonicalLink();
+    }
+
+    private String foldHost(String host) {
+        if (hostAliases.contains(host)) {
+            return siteHost;
+        }
+        if (rules.isFoldWww() && stripWww(host).equals(stripWww(siteHost))) {
+            return siteHost;
+        }
+        return host;
+    }
+
+    private String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> params = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) continue;
+            int eq = param.indexOf('=');
+            String name = (eq == -1 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+            if (!isDropped(name)) {
+                params.add(param);
+            }
+        }
+        if (rules.isSortParams()) {
+            Collections.sort(params);
+        }
+        return String.join("&", params);
+    }
+
+    private boolean isDropped(String name) {
+        for (String pattern : rules.getDropParams()) {
+            String lower = pattern.toLowerCase(Locale.ROOT);
+            if (lower.endsWith("*") ? name.startsWith(lower.substring(0, lower.length() - 1)) : name.equals(lower)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWww(String host) {
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+}
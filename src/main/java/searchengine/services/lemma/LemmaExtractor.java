@@ -1,18 +1,26 @@
+package searchengine.services.lemma;
+
+import lombok.RequiredArgsConstructor;
 import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.util.*;
 
+/**
+ * Леммы текста с числом их вхождений. Работает на общем экземпляре морфологии
+ * из {@link searchengine.config.MorphologyConfig}, словарь повторно не загружается.
+ */
+@Component
+@RequiredArgsConstructor
 public class LemmaExtractor {
-
-    private final LuceneMorphology luceneMorph;
+    private static final Logger logger = LoggerFactory.getLogger(LemmaExtractor.class);
 
     private static final List<String> EXCLUDED_PARTS = Arrays.asList("СОЮЗ", "МЕЖД", "ПРЕДЛ", "ЧАСТ");
-    public LemmaExtractor() throws IOException {
-        this.luceneMorph = new RussianLuceneMorphology();
-    }
+
+    private final LuceneMorphology luceneMorph;
 
     public Map<String, Integer> getLemmas(String text) {
         Map<String, Integer> lemmaCounts = new HashMap<>();
@@ -33,7 +41,7 @@ public class LemmaExtractor {
 
                 lemmaCounts.put(lemma, lemmaCounts.getOrDefault(lemma, 0) + 1);
             } catch (Exception e) {
-                System.out.println("Не удалось обработать слово: " + word);
+                logger.debug("Не удалось обработать слово: {}", word);
             }
         }
 
@@ -63,14 +71,4 @@ public class LemmaExtractor {
     public String cleanHtml(String html) {
         return Jsoup.parse(html).text();
     }
-
-    public static void main(String[] args) throws IOException {
-
-        LemmaExtractor extractor = new LemmaExtractor();
-        String text = "Повторное появление леопарда в Осетии позволяет предположить, что леопард постоянно обитает в некоторых районах Северного Кавказа.\n";
-        Map<String, Integer> lemmas = extractor.getLemmas(text);
-        lemmas.forEach((lemma, count) -> System.out.println(lemma + " - " + count));
-    }
-
-
 }
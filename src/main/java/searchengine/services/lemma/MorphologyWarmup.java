@@ -0,0 +1,63 @@
+package searchengine.services.lemma;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Прогрев морфологии: горячие методы {@link LemmaExtractor} прогоняются в фоне, пока
+ * поднимается остальной контекст, а приложение сообщает о готовности только после
+ * прогрева, поэтому первые запросы не платят за JIT-компиляцию.
+ */
+@Component
+@RequiredArgsConstructor
+public class MorphologyWarmup implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(MorphologyWarmup.class);
+
+    private static final int WARMUP_ROUNDS = 500;
+    private static final String WARMUP_TEXT = "Повторное появление леопарда в Осетии позволяет предположить, " +
+            "что леопард постоянно обитает в некоторых районах Северного Кавказа. " +
+            "Новости, статьи и страницы сайта индексируются для быстрого поиска.";
+
+    private final LemmaExtractor lemmaExtractor;
+    private final CompletableFuture<Void> warmup = new CompletableFuture<>();
+
+    @PostConstruct
+    public void startWarmup() {
+        Thread thread = new Thread(this::warmUp, "morphology-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Раннеры выполняются до ApplicationReadyEvent, поэтому готовность публикуется после прогрева.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            warmup.join();
+        } catch (Exception e) {
+            logger.warn("Прогрев морфологии не удался: {}", e.getMessage());
+        }
+    }
+
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            int lemmas = 0;
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                lemmas += lemmaExtractor.getLemmas(WARMUP_TEXT).size();
+            }
+            logger.info("Морфология прогрета за {} мс ({} лемм)", System.currentTimeMillis() - start, lemmas);
+            warmup.complete(null);
+        } catch (RuntimeException e) {
+            warmup.completeExceptionally(e);
+        }
+    }
+}
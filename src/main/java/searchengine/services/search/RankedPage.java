@@ -0,0 +1,14 @@
+package searchengine.services.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@RequiredArgsConstructor
+public class RankedPage {
+    private final int pageId;
+    private final float absoluteRelevance;
+    @Setter
+    private float relativeRelevance;
+}
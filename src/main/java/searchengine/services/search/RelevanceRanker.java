@@ -0,0 +1,250 @@
+package searchengine.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.model.Lemma;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.Posting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Отбор лучших страниц по сумме rank лемм запроса.
+ * Слишком частые леммы отбрасываются по сохранённой частоте, а top-k считается
+ * по схеме MaxScore: страница досчитывается только если ещё может попасть в результат.
+ * Границы берутся из сохранённых max_rank лемм и rank_norm страниц, а постинги
+ * читаются порциями по id страницы, без загрузки списка целиком.
+ * <p>
+ * max_rank и rank_norm пересчитываются только в конце обхода сайта. Если страница
+ * переиндексирована отдельно и после этого не вызваны {@link LemmaRepository#refreshStatistics}
+ * и {@link PageRepository#refreshRankNorms}, сохранённая граница может оказаться меньше
+ * настоящего rank, и страницы, которые должны попасть в выдачу, молча отбрасываются.
+ * NULL-граница безопасна: такой терм просто не отсекается.
+ * <p>
+ * Если для сайта загружен {@link SearchIndexSnapshot}, словарь и постинги читаются из него, иначе из базы.
+ */
+@Component
+@RequiredArgsConstructor
+public class RelevanceRanker {
+
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final PageRepository pageRepository;
+    private final SearchSettings searchSettings;
+    private final SearchIndexSnapshotService snapshotService;
+
+    public List<RankedPage> findTopPages(SiteEntity site, Collection<String> queryLemmas, int limit) {
+        if (limit <= 0 || queryLemmas.isEmpty()) {
+            return List.of();
+        }
+
+        Optional<SearchIndexSnapshot> snapshot = snapshotService.find(site.getId());
+        List<TermCursor> terms = new ArrayList<>();
+        for (Lemma lemma : selectLemmas(site, queryLemmas, snapshot)) {
+            int lemmaId = lemma.getId();
+            PostingSource source = snapshot.isPresent()
+                    ? (afterPageId, batchSize) -> snapshot.get().findPostings(lemmaId, afterPageId, batchSize)
+                    : (afterPageId, batchSize) -> indexRepository.findPostings(lemmaId, afterPageId, PageRequest.of(0, batchSize));
+            TermCursor term = new TermCursor(source, lemma, searchSettings.getPostingsBatch());
+            if (term.currentPage() != Integer.MAX_VALUE) {
+                terms.add(term);
+            }
+        }
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        List<RankedPage> result = maxScore(terms, limit);
+        float maxRelevance = result.get(0).getAbsoluteRelevance();
+        result.forEach(page -> page.setRelativeRelevance(
+                maxRelevance > 0 ? page.getAbsoluteRelevance() / maxRelevance : 0));
+        return result;
+    }
+
+    /**
+     * Отбрасывает леммы, которые есть на слишком большой доле страниц сайта.
+     * Если частыми оказались все леммы, остаётся самая редкая из них.
+     */
+    private List<Lemma> selectLemmas(SiteEntity site, Collection<String> queryLemmas, Optional<SearchIndexSnapshot> snapshot) {
+        List<Lemma> lemmas = snapshot.isPresent()
+                ? snapshot.get().findLemmas(queryLemmas)
+                : lemmaRepository.findBySiteAndLemmaIn(site, queryLemmas);
+        if (lemmas.isEmpty()) {
+            return lemmas;
+        }
+        // Дубликаты не индексируются, поэтому в долю страниц не входят
+        long pageCount = snapshot.isPresent()
+                ? snapshot.get().getPageCount()
+                : pageRepository.countBySiteAndDuplicateOfIsNull(site);
+        double maxFrequency = pageCount * searchSettings.getMaxLemmaPageShare();
+
+        List<Lemma> selected = new ArrayList<>();
+        for (Lemma lemma : lemmas) {
+            if (lemma.getFrequency() <= maxFrequency) {
+                selected.add(lemma);
+            }
+        }
+        if (selected.isEmpty()) {
+            selected.add(lemmas.stream().min(Comparator.comparingInt(Lemma::getFrequency)).get());
+        }
+        return selected;
+    }
+
+    private static List<RankedPage> maxScore(List<TermCursor> terms, int limit) {
+        // Термы по возрастанию верхней границы вклада; prefixBound[i] - сумма границ термов 0..i
+        terms.sort(Comparator.comparingDouble(term -> term.upperBound));
+        int count = terms.size();
+        float[] prefixBound = new float[count];
+        float sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += terms.get(i).upperBound;
+            prefixBound[i] = sum;
+        }
+
+        PriorityQueue<RankedPage> top = new PriorityQueue<>(Comparator.comparingDouble(RankedPage::getAbsoluteRelevance));
+        float threshold = 0;
+        // Термы до firstEssential вместе не дают больше порога, поэтому кандидатов берём только из остальных
+        int firstEssential = 0;
+
+        while (true) {
+            int candidate = Integer.MAX_VALUE;
+            for (int i = firstEssential; i < count; i++) {
+                candidate = Math.min(candidate, terms.get(i).currentPage());
+            }
+            if (candidate == Integer.MAX_VALUE) {
+                break;
+            }
+
+            float score = 0;
+            // Релевантность страницы не больше суммы rank всех её лемм
+            float pageBound = Float.POSITIVE_INFINITY;
+            for (int i = firstEssential; i < count; i++) {
+                TermCursor term = terms.get(i);
+                if (term.currentPage() == candidate) {
+                    score += term.currentRank();
+                    pageBound = term.currentRankNorm();
+                    term.next();
+                }
+            }
+            boolean full = top.size() == limit;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (full && Math.min(score + prefixBound[i], pageBound) <= threshold) {
+                    break;
+                }
+                TermCursor term = terms.get(i);
+                term.advanceTo(candidate);
+                if (term.currentPage() == candidate) {
+                    score += term.currentRank();
+                }
+            }
+
+            if (!full || score > threshold) {
+                top.add(new RankedPage(candidate, score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+                if (top.size() == limit) {
+                    threshold = top.peek().getAbsoluteRelevance();
+                    while (firstEssential < count && prefixBound[firstEssential] <= threshold) {
+                        firstEssential++;
+                    }
+                }
+            }
+        }
+
+        List<RankedPage> result = new ArrayList<>(top);
+        result.sort(Comparator.comparingDouble(RankedPage::getAbsoluteRelevance).reversed());
+        return result;
+    }
+
+    /**
+     * Порция постингов леммы со страниц с id больше afterPageId, по возрастанию id страницы.
+     */
+    private interface PostingSource {
+        List<Posting> load(int afterPageId, int batchSize);
+    }
+
+    /**
+     * Курсор по постингам леммы. В памяти держится одна порция; переход за её конец
+     * дочитывает следующую, а advanceTo далеко вперёд читает порцию сразу с нужной страницы.
+     */
+    private static class TermCursor {
+        private final PostingSource source;
+        private final int batchSize;
+        private final float upperBound;
+        private int[] pageIds;
+        private float[] ranks;
+        private float[] rankNorms;
+        private boolean lastBatch;
+        private int position;
+
+        TermCursor(PostingSource source, Lemma lemma, int batchSize) {
+            this.source = source;
+            this.batchSize = batchSize;
+            // Без сохранённой границы терм не отсекается, но результат остаётся точным
+            this.upperBound = lemma.getMaxRank() == null ? Float.POSITIVE_INFINITY : lemma.getMaxRank();
+            load(0);
+        }
+
+        int currentPage() {
+            return position < pageIds.length ? pageIds[position] : Integer.MAX_VALUE;
+        }
+
+        float currentRank() {
+            return ranks[position];
+        }
+
+        float currentRankNorm() {
+            return rankNorms[position];
+        }
+
+        void next() {
+            position++;
+            if (position == pageIds.length && !lastBatch) {
+                load(pageIds[position - 1]);
+            }
+        }
+
+        void advanceTo(int pageId) {
+            if (currentPage() >= pageId) {
+                return;
+            }
+            if (pageIds[pageIds.length - 1] < pageId) {
+                if (lastBatch) {
+                    position = pageIds.length;
+                } else {
+                    load(pageId - 1);
+                }
+                return;
+            }
+            int found = Arrays.binarySearch(pageIds, position, pageIds.length, pageId);
+            position = found >= 0 ? found : -found - 1;
+        }
+
+        private void load(int afterPageId) {
+            List<Posting> postings = source.load(afterPageId, batchSize);
+            pageIds = new int[postings.size()];
+            ranks = new float[postings.size()];
+            rankNorms = new float[postings.size()];
+            for (int i = 0; i < postings.size(); i++) {
+                Posting posting = postings.get(i);
+                pageIds[i] = posting.getPageId();
+                ranks[i] = posting.getRank();
+                rankNorms[i] = posting.getRankNorm() == null ? Float.POSITIVE_INFINITY : posting.getRankNorm();
+            }
+            lastBatch = postings.size() < batchSize;
+            position = 0;
+        }
+    }
+}
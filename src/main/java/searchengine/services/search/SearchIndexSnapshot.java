@@ -0,0 +1,353 @@
+package searchengine.services.search;
+
+import searchengine.model.Lemma;
+import searchengine.repository.Posting;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Снимок поискового индекса сайта: словарь лемм, постинги и rank_norm страниц в одном файле,
+ * который читается через отображение в память. Формат (big-endian):
+ * <pre>
+ * заголовок: magic, версия формата, siteId, число страниц, число лемм, смещение постингов, смещение словаря
+ * страницы:  (pageId, rankNorm) по возрастанию pageId
+ * постинги:  (pageId, rank), сгруппированы по лемме, внутри по возрастанию pageId
+ * словарь:   (lemmaId, frequency, maxRank, номер первого постинга, число постингов, длина, лемма в UTF-8)
+ * </pre>
+ * NULL в rankNorm и maxRank хранится как NaN. Файл другой версии формата или другого сайта не открывается.
+ */
+public class SearchIndexSnapshot {
+    static final int MAGIC = 0x53494458; // "SIDX"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 * 5 + 8 * 2;
+    private static final int PAGE_SIZE = 8;
+    private static final int POSTING_SIZE = 8;
+
+    private final int siteId;
+    private final MappedByteBuffer buffer;
+    private final int postingsOffset;
+    private final int[] pageIds;
+    private final float[] rankNorms;
+    private final Map<String, Entry> byLemma;
+    private final Map<Integer, Entry> byId;
+
+    private SearchIndexSnapshot(int siteId, MappedByteBuffer buffer, int postingsOffset, int[] pageIds,
+                                float[] rankNorms, Map<String, Entry> byLemma, Map<Integer, Entry> byId) {
+        this.siteId = siteId;
+        this.buffer = buffer;
+        this.postingsOffset = postingsOffset;
+        this.pageIds = pageIds;
+        this.rankNorms = rankNorms;
+        this.byLemma = byLemma;
+        this.byId = byId;
+    }
+
+    /**
+     * Открывает снимок сайта. Страницы и словарь читаются в память, постинги остаются в отображении.
+     */
+    public static SearchIndexSnapshot open(Path file, int expectedSiteId) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Недопустимый размер снимка " + file + ": " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Файл " + file + " не является снимком индекса");
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Версия снимка " + file + " " + version + ", ожидалась " + FORMAT_VERSION);
+        }
+        int siteId = buffer.getInt(8);
+        if (siteId != expectedSiteId) {
+            throw new IOException("Снимок " + file + " относится к сайту " + siteId + ", ожидался " + expectedSiteId);
+        }
+        int pageCount = buffer.getInt(12);
+        int lemmaCount = buffer.getInt(16);
+        long postingsOffset = buffer.getLong(20);
+        long dictionaryOffset = buffer.getLong(28);
+        if (postingsOffset != HEADER_SIZE + (long) pageCount * PAGE_SIZE
+                || dictionaryOffset < postingsOffset || dictionaryOffset > buffer.capacity()) {
+            throw new IOException("Повреждён заголовок снимка " + file);
+        }
+
+        int[] pageIds = new int[pageCount];
+        float[] rankNorms = new float[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            pageIds[i] = buffer.getInt(HEADER_SIZE + i * PAGE_SIZE);
+            rankNorms[i] = buffer.getFloat(HEADER_SIZE + i * PAGE_SIZE + 4);
+        }
+
+        long postingCount = (dictionaryOffset - postingsOffset) / POSTING_SIZE;
+        Map<String, Entry> byLemma = new HashMap<>(lemmaCount * 2);
+        Map<Integer, Entry> byId = new HashMap<>(lemmaCount * 2);
+        ByteBuffer dictionary = buffer.duplicate();
+        dictionary.position((int) dictionaryOffset);
+        for (int i = 0; i < lemmaCount; i++) {
+            int lemmaId = dictionary.getInt();
+            int frequency = dictionary.getInt();
+            float maxRank = dictionary.getFloat();
+            long first = dictionary.getLong();
+            int count = dictionary.getInt();
+            byte[] text = new byte[dictionary.getShort() & 0xFFFF];
+            dictionary.get(text);
+            if (first < 0 || count < 0 || first + count > postingCount) {
+                throw new IOException("Повреждён словарь снимка " + file);
+            }
+            Entry entry = new Entry(lemmaId, new String(text, StandardCharsets.UTF_8), frequency, maxRank, (int) first, count);
+            byLemma.put(entry.lemma, entry);
+            byId.put(lemmaId, entry);
+        }
+
+        return new SearchIndexSnapshot(siteId, buffer, (int) postingsOffset, pageIds, rankNorms, byLemma, byId);
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    /**
+     * Число неповторяющихся страниц сайта - знаменатель доли страниц для отсечения частых лемм.
+     */
+    public long getPageCount() {
+        return pageIds.length;
+    }
+
+    /**
+     * Леммы запроса, которые есть в словаре, в виде несохраняемых сущностей.
+     */
+    public List<Lemma> findLemmas(Collection<String> lemmas) {
+        List<Lemma> result = new ArrayList<>();
+        for (String text : lemmas) {
+            Entry entry = byLemma.get(text);
+            if (entry == null) {
+                continue;
+            }
+            Lemma lemma = new Lemma();
+            lemma.setId(entry.id);
+            lemma.setLemma(entry.lemma);
+            lemma.setFrequency(entry.frequency);
+            lemma.setMaxRank(Float.isNaN(entry.maxRank) ? null : entry.maxRank);
+            result.add(lemma);
+        }
+        return result;
+    }
+
+    /**
+     * До {@code limit} постингов леммы со страниц с id больше afterPageId, по возрастанию id страницы.
+     */
+    public List<Posting> findPostings(int lemmaId, int afterPageId, int limit) {
+        Entry entry = byId.get(lemmaId);
+        if (entry == null) {
+            return List.of();
+        }
+        int low = entry.first;
+        int high = entry.first + entry.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (postingPage(middle) <= afterPageId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int end = Math.min(entry.first + entry.count, low + limit);
+        List<Posting> result = new ArrayList<>(end - low);
+        for (int i = low; i < end; i++) {
+            int pageId = postingPage(i);
+            float rank = buffer.getFloat(postingsOffset + i * POSTING_SIZE + 4);
+            result.add(new SnapshotPosting(pageId, rank, rankNorm(pageId)));
+        }
+        return result;
+    }
+
+    private int postingPage(int index) {
+        return buffer.getInt(postingsOffset + index * POSTING_SIZE);
+    }
+
+    private Float rankNorm(int pageId) {
+        int index = Arrays.binarySearch(pageIds, pageId);
+        return index < 0 || Float.isNaN(rankNorms[index]) ? null : rankNorms[index];
+    }
+
+    private static class Entry {
+        private final int id;
+        private final String lemma;
+        private final int frequency;
+        private final float maxRank;
+        private final int first;
+        private final int count;
+
+        Entry(int id, String lemma, int frequency, float maxRank, int first, int count) {
+            this.id = id;
+            this.lemma = lemma;
+            this.frequency = frequency;
+            this.maxRank = maxRank;
+            this.first = first;
+            this.count = count;
+        }
+    }
+
+    private static class SnapshotPosting implements Posting {
+        private final int pageId;
+        private final float rank;
+        private final Float rankNorm;
+
+        SnapshotPosting(int pageId, float rank, Float rankNorm) {
+            this.pageId = pageId;
+            this.rank = rank;
+            this.rankNorm = rankNorm;
+        }
+
+        @Override
+        public int getPageId() {
+            return pageId;
+        }
+
+        @Override
+        public float getRank() {
+            return rank;
+        }
+
+        @Override
+        public Float getRankNorm() {
+            return rankNorm;
+        }
+    }
+
+    /**
+     * Потоковая запись снимка: сначала все страницы, затем постинги по леммам, затем словарь.
+     * Пишется во временный файл, который по {@link #finish} атомарно заменяет целевой.
+     */
+    public static class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final int siteId;
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        private final Map<Integer, long[]> lemmaPostings = new LinkedHashMap<>();
+        private int pageCount;
+        private int lastPageId = Integer.MIN_VALUE;
+        private long postingCount;
+        private boolean postingsStarted;
+        private int currentLemmaId;
+        private int lastPostingPage;
+        private boolean finished;
+
+        public Writer(Path target, int siteId) throws IOException {
+            this.target = target;
+            this.siteId = siteId;
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        }
+
+        public void addPage(int pageId, Float rankNorm) throws IOException {
+            if (postingsStarted || pageId <= lastPageId) {
+                throw new IllegalStateException("Страницы пишутся до постингов и по возрастанию id");
+            }
+            ensure(PAGE_SIZE);
+            out.putInt(pageId).putFloat(rankNorm == null ? Float.NaN : rankNorm);
+            lastPageId = pageId;
+            pageCount++;
+        }
+
+        public void addPosting(int lemmaId, int pageId, float rank) throws IOException {
+            if (!postingsStarted || lemmaId != currentLemmaId) {
+                if (lemmaPostings.containsKey(lemmaId)) {
+                    throw new IllegalStateException("Постинги леммы " + lemmaId + " должны идти подряд");
+                }
+                lemmaPostings.put(lemmaId, new long[]{postingCount, 0});
+                currentLemmaId = lemmaId;
+                lastPostingPage = Integer.MIN_VALUE;
+                postingsStarted = true;
+            }
+            if (pageId <= lastPostingPage) {
+                throw new IllegalStateException("Постинги леммы " + lemmaId + " должны идти по возрастанию id страницы");
+            }
+            ensure(POSTING_SIZE);
+            out.putInt(pageId).putFloat(rank);
+            lastPostingPage = pageId;
+            lemmaPostings.get(lemmaId)[1]++;
+            postingCount++;
+        }
+
+        /**
+         * Дописывает словарь и заголовок и подменяет целевой файл.
+         */
+        public void finish(Collection<Lemma> lemmas) throws IOException {
+            long postingsOffset = HEADER_SIZE + (long) pageCount * PAGE_SIZE;
+            long dictionaryOffset = postingsOffset + postingCount * POSTING_SIZE;
+            for (Lemma lemma : lemmas) {
+                long[] postings = lemmaPostings.getOrDefault(lemma.getId(), new long[]{0, 0});
+                byte[] text = lemma.getLemma().getBytes(StandardCharsets.UTF_8);
+                ensure(4 + 4 + 4 + 8 + 4 + 2 + text.length);
+                out.putInt(lemma.getId())
+                        .putInt(lemma.getFrequency())
+                        .putFloat(lemma.getMaxRank() == null ? Float.NaN : lemma.getMaxRank())
+                        .putLong(postings[0])
+                        .putInt((int) postings[1])
+                        .putShort((short) text.length)
+                        .put(text);
+            }
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(siteId).putInt(pageCount).putInt(lemmas.size())
+                    .putLong(postingsOffset).putLong(dictionaryOffset).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (out.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+        }
+    }
+}
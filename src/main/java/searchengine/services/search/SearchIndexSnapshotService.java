@@ -0,0 +1,133 @@
+package searchengine.services.search;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.model.Lemma;
+import searchengine.model.SiteEntity;
+import searchengine.model.SiteStatus;
+import searchengine.repository.SiteRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Снимки поискового индекса сайтов на локальном диске узла. Снимок пишется, когда обход сайта
+ * закончен и статистика лемм пересчитана, и загружается при старте до сообщения о готовности,
+ * так что первые запросы не сканируют таблицы lemma и index.
+ * <p>
+ * Снимок привязан к id сайта, а каждый обход создаёт сайт заново, поэтому снимок
+ * прошлого обхода никогда не подменит текущий. Снимок, как и max_rank/rank_norm, отражает
+ * индекс на конец обхода: отдельная переиндексация страницы его не обновляет.
+ */
+@Service
+@RequiredArgsConstructor
+public class SearchIndexSnapshotService implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexSnapshotService.class);
+    private static final String SUFFIX = ".idx";
+
+    private final SiteRepository siteRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final SearchSettings searchSettings;
+    private final Map<Integer, SearchIndexSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    public Optional<SearchIndexSnapshot> find(int siteId) {
+        return Optional.ofNullable(snapshots.get(siteId));
+    }
+
+    /**
+     * Загружает снимки проиндексированных сайтов. Раннеры выполняются до ApplicationReadyEvent.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        for (SiteEntity site : siteRepository.findByStatus(SiteStatus.INDEXED)) {
+            Path file = snapshotPath(site.getId());
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try {
+                snapshots.put(site.getId(), SearchIndexSnapshot.open(file, site.getId()));
+            } catch (IOException e) {
+                // Поиск по сайту пойдёт через базу, снимок перепишется после следующего обхода
+                logger.warn("Снимок индекса сайта {} не загружен: {}", site.getUrl(), e.getMessage());
+            }
+        }
+        logger.info("Загружено снимков индекса: {} за {} мс", snapshots.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Пишет снимок сайта из таблиц page, lemma и index. Ошибка записи не мешает индексации:
+     * без снимка поиск читает базу.
+     */
+    public void write(int siteId) {
+        long start = System.currentTimeMillis();
+        Path file = snapshotPath(siteId);
+        // Построчная выдача MySQL: постинги сайта не собираются в память целиком
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(Integer.MIN_VALUE);
+
+        try (SearchIndexSnapshot.Writer writer = new SearchIndexSnapshot.Writer(file, siteId)) {
+            streaming.query("SELECT id, rank_norm FROM page WHERE site_id = ? AND duplicate_of IS NULL ORDER BY id",
+                    rs -> {
+                        try {
+                            float norm = rs.getFloat(2);
+                            writer.addPage(rs.getInt(1), rs.wasNull() ? null : norm);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, siteId);
+            streaming.query("SELECT i.lemma_id, i.page_id, i.`rank` FROM `index` i JOIN lemma l ON l.id = i.lemma_id " +
+                            "WHERE l.site_id = ? ORDER BY i.lemma_id, i.page_id",
+                    rs -> {
+                        try {
+                            writer.addPosting(rs.getInt(1), rs.getInt(2), rs.getFloat(3));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, siteId);
+            List<Lemma> lemmas = jdbcTemplate.query("SELECT id, lemma, frequency, max_rank FROM lemma WHERE site_id = ?",
+                    (rs, rowNum) -> {
+                        Lemma lemma = new Lemma();
+                        lemma.setId(rs.getInt(1));
+                        lemma.setLemma(rs.getString(2));
+                        lemma.setFrequency(rs.getInt(3));
+                        float maxRank = rs.getFloat(4);
+                        lemma.setMaxRank(rs.wasNull() ? null : maxRank);
+                        return lemma;
+                    }, siteId);
+            writer.finish(lemmas);
+
+            snapshots.put(siteId, SearchIndexSnapshot.open(file, siteId));
+            logger.info("Снимок индекса сайта id={} записан за {} мс", siteId, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            snapshots.remove(siteId);
+            logger.warn("Не удалось записать снимок индекса сайта id={}: {}", siteId, e.getMessage());
+        }
+    }
+
+    public void delete(int siteId) {
+        snapshots.remove(siteId);
+        try {
+            Files.deleteIfExists(snapshotPath(siteId));
+        } catch (IOException e) {
+            logger.warn("Не удалось удалить снимок индекса сайта id={}: {}", siteId, e.getMessage());
+        }
+    }
+
+    private Path snapshotPath(int siteId) {
+        return Paths.get(searchSettings.getSnapshotPath()).resolve(siteId + SUFFIX);
+    }
+}
@@ -0,0 +1,232 @@
+package searchengine.services.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import searchengine.config.SearchSettings;
+import searchengine.model.Lemma;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.Posting;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * MaxScore с порционным чтением постингов сверяется с полным перебором.
+ * Ранги целые, поэтому суммы сравниваются точно.
+ */
+class RelevanceRankerTest {
+    private static final SiteEntity SITE = new SiteEntity();
+
+    private final LemmaRepository lemmaRepository = mock(LemmaRepository.class);
+    private final IndexRepository indexRepository = mock(IndexRepository.class);
+    private final PageRepository pageRepository = mock(PageRepository.class);
+    private final SearchIndexSnapshotService snapshotService = mock(SearchIndexSnapshotService.class);
+    private final SearchSettings searchSettings = new SearchSettings();
+    private final RelevanceRanker ranker =
+            new RelevanceRanker(lemmaRepository, indexRepository, pageRepository, searchSettings, snapshotService);
+
+    // Текущий набор данных: ranks[lemmaId][pageId], 0 - леммы на странице нет
+    private float[][] ranks;
+    private Float[] rankNorms;
+    private List<Lemma> lemmas;
+    private SearchIndexSnapshot snapshot;
+
+    @TempDir
+    Path snapshotDir;
+
+    @BeforeEach
+    void setUp() {
+        searchSettings.setMaxLemmaPageShare(1.0);
+        when(lemmaRepository.findBySiteAndLemmaIn(any(), anyCollection())).thenAnswer(invocation -> lemmas);
+        when(pageRepository.countBySiteAndDuplicateOfIsNull(any())).thenAnswer(invocation -> (long) rankNorms.length);
+        when(indexRepository.findPostings(anyInt(), anyInt(), any(Pageable.class))).thenAnswer(invocation ->
+                postings(invocation.getArgument(0), invocation.getArgument(1), invocation.<Pageable>getArgument(2).getPageSize()));
+        when(snapshotService.find(anyInt())).thenAnswer(invocation -> Optional.ofNullable(snapshot));
+    }
+
+    @Test
+    void matchesBruteForceTopK() {
+        Random random = new Random(42);
+        for (int round = 0; round < 3000; round++) {
+            searchSettings.setPostingsBatch(1 + random.nextInt(4));
+            int limit = 1 + random.nextInt(8);
+            generate(random, 1 + random.nextInt(60), 1 + random.nextInt(5), true);
+
+            List<Float> actual = ranker.findTopPages(SITE, List.of("запрос"), limit).stream()
+                    .map(RankedPage::getAbsoluteRelevance)
+                    .toList();
+            assertEquals(bruteForce(limit), actual, "раунд " + round);
+        }
+    }
+
+    @Test
+    void missingBoundsKeepResultsExact() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            searchSettings.setPostingsBatch(1 + random.nextInt(3));
+            int limit = 1 + random.nextInt(5);
+            generate(random, 1 + random.nextInt(40), 1 + random.nextInt(4), false);
+            lemmas.forEach(lemma -> lemma.setMaxRank(null));
+            for (int page = 0; page < rankNorms.length; page++) {
+                rankNorms[page] = null;
+            }
+
+            List<Float> actual = ranker.findTopPages(SITE, List.of("запрос"), limit).stream()
+                    .map(RankedPage::getAbsoluteRelevance)
+                    .toList();
+            assertEquals(bruteForce(limit), actual, "раунд " + round);
+        }
+    }
+
+    @Test
+    void snapshotMatchesBruteForceTopK() throws IOException {
+        Random random = new Random(11);
+        for (int round = 0; round < 500; round++) {
+            searchSettings.setPostingsBatch(1 + random.nextInt(4));
+            int limit = 1 + random.nextInt(8);
+            generate(random, 1 + random.nextInt(60), 1 + random.nextInt(5), true);
+            snapshot = writeSnapshot(round);
+            List<String> query = lemmas.stream().map(Lemma::getLemma).toList();
+
+            List<Float> actual = ranker.findTopPages(SITE, query, limit).stream()
+                    .map(RankedPage::getAbsoluteRelevance)
+                    .toList();
+            assertEquals(bruteForce(limit), actual, "раунд " + round);
+        }
+    }
+
+    @Test
+    void relativeRelevanceIsScaledToBestPage() {
+        generate(new Random(1), 20, 3, false);
+        List<RankedPage> result = ranker.findTopPages(SITE, List.of("запрос"), 5);
+
+        assertEquals(1.0f, result.get(0).getRelativeRelevance());
+        result.forEach(page -> assertTrue(page.getRelativeRelevance() <= 1.0f));
+    }
+
+    /**
+     * Страницы с id 1..pageCount; часть rank_norm больше суммы рангов, как у страниц
+     * с леммами вне запроса, часть границ не сохранена.
+     */
+    private void generate(Random random, int pageCount, int lemmaCount, boolean dropSomeBounds) {
+        ranks = new float[lemmaCount][pageCount + 1];
+        rankNorms = new Float[pageCount + 1];
+        lemmas = new ArrayList<>();
+
+        for (int lemmaId = 0; lemmaId < lemmaCount; lemmaId++) {
+            float maxRank = 0;
+            int frequency = 0;
+            for (int page = 1; page <= pageCount; page++) {
+                if (random.nextInt(3) == 0) {
+                    ranks[lemmaId][page] = 1 + random.nextInt(20);
+                    maxRank = Math.max(maxRank, ranks[lemmaId][page]);
+                    frequency++;
+                }
+            }
+            Lemma lemma = new Lemma();
+            lemma.setId(lemmaId);
+            lemma.setFrequency(frequency);
+            lemma.setMaxRank(dropSomeBounds && random.nextInt(8) == 0 ? null : maxRank);
+            lemmas.add(lemma);
+        }
+        for (int page = 1; page <= pageCount; page++) {
+            float sum = 0;
+            for (float[] lemmaRanks : ranks) {
+                sum += lemmaRanks[page];
+            }
+            rankNorms[page] = dropSomeBounds && random.nextInt(10) == 0 ? null : sum + random.nextInt(3) * random.nextInt(10);
+        }
+    }
+
+    /**
+     * Тот же набор данных в снимке; леммам даются разные тексты, по которым их находит запрос.
+     */
+    private SearchIndexSnapshot writeSnapshot(int round) throws IOException {
+        lemmas.forEach(lemma -> lemma.setLemma("лемма" + lemma.getId()));
+        Path file = snapshotDir.resolve(round + ".idx");
+        try (SearchIndexSnapshot.Writer writer = new SearchIndexSnapshot.Writer(file, round)) {
+            for (int page = 1; page < rankNorms.length; page++) {
+                writer.addPage(page, rankNorms[page]);
+            }
+            for (Lemma lemma : lemmas) {
+                for (int page = 1; page < rankNorms.length; page++) {
+                    if (ranks[lemma.getId()][page] > 0) {
+                        writer.addPosting(lemma.getId(), page, ranks[lemma.getId()][page]);
+                    }
+                }
+            }
+            writer.finish(lemmas);
+        }
+        return SearchIndexSnapshot.open(file, round);
+    }
+
+    private List<Posting> postings(int lemmaId, int afterPageId, int limit) {
+        List<Posting> result = new ArrayList<>();
+        for (int page = afterPageId + 1; page < rankNorms.length && result.size() < limit; page++) {
+            if (ranks[lemmaId][page] > 0) {
+                result.add(new TestPosting(page, ranks[lemmaId][page], rankNorms[page]));
+            }
+        }
+        return result;
+    }
+
+    private List<Float> bruteForce(int limit) {
+        List<Float> scores = new ArrayList<>();
+        for (int page = 1; page < rankNorms.length; page++) {
+            float sum = 0;
+            for (float[] lemmaRanks : ranks) {
+                sum += lemmaRanks[page];
+            }
+            if (sum > 0) {
+                scores.add(sum);
+            }
+        }
+        scores.sort(Comparator.reverseOrder());
+        return scores.subList(0, Math.min(limit, scores.size()));
+    }
+
+    private static class TestPosting implements Posting {
+        private final int pageId;
+        private final float rank;
+        private final Float rankNorm;
+
+        TestPosting(int pageId, float rank, Float rankNorm) {
+            this.pageId = pageId;
+            this.rank = rank;
+            this.rankNorm = rankNorm;
+        }
+
+        @Override
+        public int getPageId() {
+            return pageId;
+        }
+
+        @Override
+        public float getRank() {
+            return rank;
+        }
+
+        @Override
+        public Float getRankNorm() {
+            return rankNorm;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package searchengine.services.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.model.Lemma;
+import searchengine.repository.Posting;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path file = write(7);
+        SearchIndexSnapshot snapshot = SearchIndexSnapshot.open(file, 7);
+
+        assertEquals(7, snapshot.getSiteId());
+        assertEquals(3, snapshot.getPageCount());
+
+        List<Lemma> lemmas = snapshot.findLemmas(List.of("леопард", "кавказ", "нет такой"));
+        assertEquals(2, lemmas.size());
+        Lemma leopard = lemmas.get(0);
+        assertEquals(1, leopard.getId());
+        assertEquals(2, leopard.getFrequency());
+        assertEquals(5f, leopard.getMaxRank());
+        assertNull(lemmas.get(1).getMaxRank());
+
+        List<Posting> postings = snapshot.findPostings(1, 0, 10);
+        assertEquals(2, postings.size());
+        assertEquals(10, postings.get(0).getPageId());
+        assertEquals(2f, postings.get(0).getRank());
+        assertEquals(9f, postings.get(0).getRankNorm());
+        assertNull(postings.get(1).getRankNorm());
+
+        // Порция начинается со страницы после afterPageId и ограничена limit
+        List<Posting> tail = snapshot.findPostings(2, 10, 1);
+        assertEquals(1, tail.size());
+        assertEquals(20, tail.get(0).getPageId());
+        assertTrue(snapshot.findPostings(2, 30, 10).isEmpty());
+        assertTrue(snapshot.findPostings(3, 0, 10).isEmpty());
+    }
+
+    @Test
+    void rejectsOtherSiteAndOtherFormatVersion() throws IOException {
+        Path file = write(7);
+        assertThrows(IOException.class, () -> SearchIndexSnapshot.open(file, 8));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, SearchIndexSnapshot.FORMAT_VERSION + 1), 4);
+        }
+        assertThrows(IOException.class, () -> SearchIndexSnapshot.open(file, 7));
+    }
+
+    @Test
+    void unfinishedWriteLeavesNoFile() throws IOException {
+        Path file = dir.resolve("unfinished.idx");
+        try (SearchIndexSnapshot.Writer writer = new SearchIndexSnapshot.Writer(file, 1)) {
+            writer.addPage(1, 1f);
+        }
+        assertFalse(Files.exists(file));
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private Path write(int siteId) throws IOException {
+        Path file = dir.resolve(siteId + ".idx");
+        try (SearchIndexSnapshot.Writer writer = new SearchIndexSnapshot.Writer(file, siteId)) {
+            writer.addPage(10, 9f);
+            writer.addPage(20, null);
+            writer.addPage(30, 4f);
+            writer.addPosting(1, 10, 2f);
+            writer.addPosting(1, 20, 5f);
+            writer.addPosting(2, 10, 1f);
+            writer.addPosting(2, 20, 3f);
+            writer.finish(List.of(lemma(1, "леопард", 2, 5f), lemma(2, "кавказ", 2, null), lemma(3, "осетия", 0, null)));
+        }
+        return file;
+    }
+
+    private static Lemma lemma(int id, String text, int frequency, Float maxRank) {
+        Lemma lemma = new Lemma();
+        lemma.setId(id);
+        lemma.setLemma(text);
+        lemma.setFrequency(frequency);
+        lemma.setMaxRank(maxRank);
+        return lemma;
+    }
+}